@@ -0,0 +1,142 @@
+package edu.ted.executorservice;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Linux CPU affinity of the current thread and CPU socket topology.
+ * The affinity is set with the {@code taskset} utility for the thread id read from {@code /proc/thread-self},
+ * so no native code is needed. On other systems, or when {@code taskset} is missing, pinning is a no-op.
+ * {@code taskset} is looked up once in the system binary directories rather than on the {@code PATH},
+ * and a run that does not finish within {@value #TASKSET_TIMEOUT_MILLIS} ms is killed and counts as failed.
+ */
+@Slf4j
+final class CpuAffinity {
+
+    private static final Path THREAD_SELF = Paths.get("/proc/thread-self");
+    private static final Path CPU_DIRECTORY = Paths.get("/sys/devices/system/cpu");
+    private static final Pattern CPU_NAME = Pattern.compile("cpu\\d+");
+    private static final File DEV_NULL = new File("/dev/null");
+    private static final List<String> TASKSET_LOCATIONS = Arrays.asList("/usr/bin/taskset", "/bin/taskset", "/usr/sbin/taskset", "/sbin/taskset");
+    private static final long TASKSET_TIMEOUT_MILLIS = 1000;
+    private static final String TASKSET = findTaskset();
+    private static final boolean IS_SUPPORTED = TASKSET != null;
+
+    private CpuAffinity() {
+    }
+
+    static boolean isSupported() {
+        return IS_SUPPORTED;
+    }
+
+    /**
+     * Restricts the current thread to the given CPUs.
+     *
+     * @return {@code false} if pinning is not supported or failed, the thread then keeps its affinity
+     */
+    static boolean pinCurrentThread(int[] cpus) {
+        if (!IS_SUPPORTED) {
+            return false;
+        }
+        try {
+            String threadId = Files.readSymbolicLink(THREAD_SELF).getFileName().toString();
+            return runTaskset("-p", "-c", toCpuList(cpus), threadId);
+        } catch (IOException e) {
+            log.debug("CPU affinity cannot be set", e);
+            return false;
+        }
+    }
+
+    /**
+     * @return online CPUs grouped by physical package id, or a single group of
+     * {@code 0..availableProcessors-1} if the topology cannot be read
+     */
+    static SortedMap<Integer, List<Integer>> readSocketCpus() {
+        SortedMap<Integer, List<Integer>> socketCpus = new TreeMap<>();
+        try (DirectoryStream<Path> cpuDirectories = Files.newDirectoryStream(CPU_DIRECTORY,
+                path -> CPU_NAME.matcher(path.getFileName().toString()).matches())) {
+            for (Path cpuDirectory : cpuDirectories) {
+                Path packageIdFile = cpuDirectory.resolve("topology/physical_package_id");
+                if (!Files.isReadable(packageIdFile) || !isOnline(cpuDirectory)) {
+                    continue;
+                }
+                int cpu = Integer.parseInt(cpuDirectory.getFileName().toString().substring(3));
+                int socket = Integer.parseInt(readFirstLine(packageIdFile));
+                socketCpus.computeIfAbsent(socket, s -> new ArrayList<>()).add(cpu);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.debug("CPU topology cannot be read", e);
+            socketCpus.clear();
+        }
+        if (socketCpus.isEmpty()) {
+            List<Integer> cpus = new ArrayList<>();
+            for (int cpu = 0; cpu < Runtime.getRuntime().availableProcessors(); cpu++) {
+                cpus.add(cpu);
+            }
+            socketCpus.put(0, cpus);
+        }
+        socketCpus.values().forEach(Collections::sort);
+        return socketCpus;
+    }
+
+    static String toCpuList(int[] cpus) {
+        StringJoiner cpuList = new StringJoiner(",");
+        for (int cpu : cpus) {
+            cpuList.add(Integer.toString(cpu));
+        }
+        return cpuList.toString();
+    }
+
+    private static boolean isOnline(Path cpuDirectory) throws IOException {
+        Path onlineFile = cpuDirectory.resolve("online");
+        //cpu0 usually has no online file as it cannot be taken offline
+        return !Files.isReadable(onlineFile) || "1".equals(readFirstLine(onlineFile));
+    }
+
+    private static String readFirstLine(Path file) throws IOException {
+        return new String(Files.readAllBytes(file), StandardCharsets.US_ASCII).trim();
+    }
+
+    /**
+     * @return absolute path of an executable {@code taskset}, or {@code null} if CPU affinity is not supported
+     */
+    private static String findTaskset() {
+        if (!System.getProperty("os.name", "").toLowerCase(Locale.ROOT).startsWith("linux") || !Files.isSymbolicLink(THREAD_SELF)) {
+            return null;
+        }
+        for (String location : TASKSET_LOCATIONS) {
+            if (Files.isExecutable(Paths.get(location))) {
+                return location;
+            }
+        }
+        log.debug("taskset is not available, CPU affinity is not supported");
+        return null;
+    }
+
+    private static boolean runTaskset(String... arguments) throws IOException {
+        List<String> command = new ArrayList<>(arguments.length + 1);
+        command.add(TASKSET);
+        command.addAll(Arrays.asList(arguments));
+        Process process = new ProcessBuilder(command)
+                .redirectOutput(DEV_NULL)
+                .redirectError(DEV_NULL)
+                .start();
+        try {
+            if (process.waitFor(TASKSET_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                return process.exitValue() == 0;
+            }
+            log.debug("taskset did not finish in {} ms", TASKSET_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        process.destroyForcibly();
+        return false;
+    }
+}
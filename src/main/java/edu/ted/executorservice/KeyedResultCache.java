@@ -0,0 +1,79 @@
+package edu.ted.executorservice;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Small size and TTL bounded cache of task results used by keyed submission
+ * in {@link SimpleFixedThreadPool}. Eldest entries are evicted first when the cache is full.
+ */
+class KeyedResultCache {
+
+    private final int maxSize;
+    private final long timeToLiveNanos;
+    private final Map<Object, CachedResult> results;
+
+    KeyedResultCache(int maxSize, long timeToLive, TimeUnit unit) {
+        if (maxSize <= 0 || timeToLive <= 0) {
+            throw new IllegalArgumentException("Cache size and time to live must be positive: " + maxSize + ", " + timeToLive);
+        }
+        this.maxSize = maxSize;
+        this.timeToLiveNanos = unit.toNanos(timeToLive);
+        this.results = new EvictingMap(maxSize);
+    }
+
+    /**
+     * @return cached result holder or {@code null} if the key is absent or its entry has expired
+     */
+    synchronized CachedResult get(Object key) {
+        CachedResult cachedResult = results.get(key);
+        if (cachedResult == null) {
+            return null;
+        }
+        if (System.nanoTime() - cachedResult.expiresAt >= 0) {
+            results.remove(key);
+            return null;
+        }
+        return cachedResult;
+    }
+
+    synchronized void put(Object key, Object value) {
+        results.remove(key);
+        results.put(key, new CachedResult(value, System.nanoTime() + timeToLiveNanos));
+    }
+
+    synchronized int size() {
+        return results.size();
+    }
+
+    static class CachedResult {
+        private final Object value;
+        private final long expiresAt;
+
+        private CachedResult(Object value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        Object getValue() {
+            return value;
+        }
+    }
+
+    private static class EvictingMap extends LinkedHashMap<Object, CachedResult> {
+        private static final long serialVersionUID = 1L;
+
+        private final int maxSize;
+
+        private EvictingMap(int maxSize) {
+            super(16, 0.75f, false);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Object, CachedResult> eldest) {
+            return size() > maxSize;
+        }
+    }
+}
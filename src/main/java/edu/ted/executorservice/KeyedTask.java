@@ -0,0 +1,79 @@
+package edu.ted.executorservice;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Task shared by the callers of {@link SimpleFixedThreadPool#submit(Object, Callable)} for the same key.
+ * Every caller gets its own Future: cancelling it only detaches that caller, the shared task
+ * is cancelled once no caller is attached any more.
+ */
+final class KeyedTask<T> {
+
+    private final SimpleFutureTask<T> task;
+    private int attachedCount;
+    private boolean isAbandoned;
+
+    KeyedTask(Callable<T> callable) {
+        this.task = new SimpleFutureTask<>(callable);
+    }
+
+    SimpleFutureTask<T> getTask() {
+        return task;
+    }
+
+    /**
+     * @return Future of a new caller, or {@code null} if all callers have cancelled and the task is cancelled
+     */
+    Future<T> attach() {
+        synchronized (this) {
+            if (isAbandoned) {
+                return null;
+            }
+            attachedCount++;
+        }
+        CallerFuture callerFuture = new CallerFuture();
+        task.addCompletionListener(callerFuture::completeFromTask);
+        return callerFuture;
+    }
+
+    private void detach(boolean mayInterruptIfRunning) {
+        synchronized (this) {
+            if (--attachedCount > 0) {
+                return;
+            }
+            isAbandoned = true;
+        }
+        task.cancel(mayInterruptIfRunning);
+    }
+
+    private class CallerFuture extends CompletableFuture<T> {
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean isCancelled = super.cancel(mayInterruptIfRunning);
+            if (isCancelled) {
+                detach(mayInterruptIfRunning);
+            }
+            return isCancelled;
+        }
+
+        private void completeFromTask() {
+            if (task.isCancelled()) {
+                super.cancel(false);
+                return;
+            }
+            try {
+                complete(task.get());
+            } catch (ExecutionException e) {
+                completeExceptionally(e.getCause());
+            } catch (InterruptedException e) {
+                //the task is done, get() does not wait
+                Thread.currentThread().interrupt();
+                completeExceptionally(e);
+            }
+        }
+    }
+}
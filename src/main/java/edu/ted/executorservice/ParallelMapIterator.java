@@ -0,0 +1,99 @@
+package edu.ted.executorservice;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Lazy iterator over the results of mapping a source iterator on a {@link SimpleFixedThreadPool}.
+ * At most {@code maxInFlight} tasks are submitted at any time; the source is consumed in the caller's
+ * thread only when the window has a free slot. Results are returned either in input order or
+ * in completion order. A failed mapping is rethrown from {@link #next()} as {@link CompletionException}.
+ * Closing the iterator cancels the submitted tasks whose results have not been returned yet.
+ */
+class ParallelMapIterator<T, R> implements SimpleFixedThreadPool.CloseableIterator<R> {
+
+    private final SimpleFixedThreadPool executor;
+    private final Iterator<? extends T> source;
+    private final Function<? super T, ? extends R> mapper;
+    private final int maxInFlight;
+    private final boolean ordered;
+    private final Collection<Future<R>> submittedTasks;
+    private final SimpleCompletionService<R> completionService;
+    private boolean isClosed;
+
+    ParallelMapIterator(SimpleFixedThreadPool executor, Iterator<? extends T> source, Function<? super T, ? extends R> mapper, int maxInFlight, boolean ordered) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("Argument maxInFlight must be positive: " + maxInFlight);
+        }
+        this.executor = executor;
+        this.source = source;
+        this.mapper = mapper;
+        this.maxInFlight = maxInFlight;
+        this.ordered = ordered;
+        this.submittedTasks = ordered ? new ArrayDeque<>(maxInFlight) : new LinkedHashSet<>();
+        this.completionService = ordered ? null : new SimpleCompletionService<>(executor);
+    }
+
+    @Override
+    public boolean hasNext() {
+        fillWindow();
+        return !submittedTasks.isEmpty();
+    }
+
+    @Override
+    public R next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        try {
+            Future<R> future;
+            if (ordered) {
+                future = ((Queue<Future<R>>) submittedTasks).poll();
+            } else {
+                future = completionService.take();
+                submittedTasks.remove(future);
+            }
+            //keep the window full while the caller is busy with the current result
+            fillWindow();
+            return future.get();
+        } catch (ExecutionException e) {
+            throw new CompletionException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        }
+    }
+
+    /**
+     * Stops consuming the source and cancels the tasks in flight, interrupting the running ones,
+     * so an abandoned iteration gives the pool capacity back.
+     */
+    @Override
+    public void close() {
+        isClosed = true;
+        for (Future<R> future : submittedTasks) {
+            future.cancel(true);
+        }
+        submittedTasks.clear();
+    }
+
+    private void fillWindow() {
+        while (!isClosed && submittedTasks.size() < maxInFlight && source.hasNext()) {
+            T element = source.next();
+            SimpleFutureTask<R> task = new SimpleFutureTask<>(() -> mapper.apply(element), element);
+            if (ordered) {
+                submittedTasks.add(executor.internalSubmit(task));
+            } else {
+                submittedTasks.add(completionService.submitTask(task));
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package edu.ted.executorservice;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool split into partitions, each a {@link SimpleFixedThreadPool} with its own queue and workers pinned by its own
+ * {@link WorkerPlacement}, e.g. one partition per CPU socket created by {@link #perSocket(int)}.
+ * <p>
+ * A task submitted from a worker of a partition stays in that partition, so follow-up work keeps running on the
+ * same cores. Other tasks go to the partition with the fewest queued tasks, partitions with equal load take turns.
+ * {@link #getPartition(int)} gives access to a single partition for explicit routing.
+ */
+public class PartitionedThreadPool extends AbstractExecutorService {
+
+    private final List<SimpleFixedThreadPool> partitions;
+    private final AtomicInteger nextPartition = new AtomicInteger();
+
+    /**
+     * @param workersPerPartition number of workers of every partition
+     * @param placements          one placement per partition
+     */
+    public PartitionedThreadPool(int workersPerPartition, List<WorkerPlacement> placements) {
+        if (placements.isEmpty()) {
+            throw new IllegalArgumentException("At least one partition is required");
+        }
+        partitions = new ArrayList<>(placements.size());
+        for (WorkerPlacement placement : placements) {
+            SimpleFixedThreadPool partition = new SimpleFixedThreadPool(workersPerPartition);
+            partition.setWorkerPlacement(placement);
+            partitions.add(partition);
+        }
+    }
+
+    /**
+     * Creates one partition per CPU socket, see {@link WorkerPlacement#perSocket()}.
+     */
+    public static PartitionedThreadPool perSocket(int workersPerSocket) {
+        return new PartitionedThreadPool(workersPerSocket, WorkerPlacement.perSocket());
+    }
+
+    public int getPartitionCount() {
+        return partitions.size();
+    }
+
+    public SimpleFixedThreadPool getPartition(int index) {
+        return partitions.get(index);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        SimpleFixedThreadPool partition = choosePartition();
+        if (command instanceof SimpleFutureTask) {
+            partition.internalSubmit((SimpleFutureTask<?>) command);
+        } else {
+            partition.execute(command);
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        for (SimpleFixedThreadPool partition : partitions) {
+            partition.shutdown();
+        }
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        List<Runnable> notStartedTasks = new ArrayList<>();
+        for (SimpleFixedThreadPool partition : partitions) {
+            notStartedTasks.addAll(partition.shutdownNow());
+        }
+        return notStartedTasks;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return partitions.get(0).isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        for (SimpleFixedThreadPool partition : partitions) {
+            if (!partition.isTerminated()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (SimpleFixedThreadPool partition : partitions) {
+            if (!partition.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+        return new SimpleFutureTask<>(callable);
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+        return new SimpleFutureTask<>(runnable, value);
+    }
+
+    private SimpleFixedThreadPool choosePartition() {
+        SimpleFixedThreadPool currentPool = SimpleFixedThreadPool.currentPool();
+        for (SimpleFixedThreadPool partition : partitions) {
+            if (partition == currentPool) {
+                return partition;
+            }
+        }
+        int partitionCount = partitions.size();
+        int start = Math.floorMod(nextPartition.getAndIncrement(), partitionCount);
+        SimpleFixedThreadPool leastLoaded = partitions.get(start);
+        int leastQueuedTaskCount = leastLoaded.getApproximateQueuedTaskCount();
+        for (int i = 1; i < partitionCount && leastQueuedTaskCount > 0; i++) {
+            SimpleFixedThreadPool partition = partitions.get((start + i) % partitionCount);
+            int queuedTaskCount = partition.getApproximateQueuedTaskCount();
+            if (queuedTaskCount < leastQueuedTaskCount) {
+                leastLoaded = partition;
+                leastQueuedTaskCount = queuedTaskCount;
+            }
+        }
+        return leastLoaded;
+    }
+}
@@ -0,0 +1,101 @@
+package edu.ted.executorservice;
+
+/**
+ * Point-in-time snapshot of {@link SimpleFixedThreadPool} metrics.
+ */
+public class PoolStatistics {
+
+    private final int poolSize;
+    private final int workerCount;
+    private final int queuedTaskCount;
+    private final long queuedTaskWeight;
+    private final long expiredTaskCount;
+    private final int blockedWorkerCount;
+    private final int compensatingWorkerCount;
+    private final long handedOffTaskCount;
+    private final QueueStatistics queueStatistics;
+
+    PoolStatistics(int poolSize, int workerCount, int queuedTaskCount, long queuedTaskWeight, long expiredTaskCount,
+                   int blockedWorkerCount, int compensatingWorkerCount, long handedOffTaskCount, QueueStatistics queueStatistics) {
+        this.poolSize = poolSize;
+        this.workerCount = workerCount;
+        this.queuedTaskCount = queuedTaskCount;
+        this.queuedTaskWeight = queuedTaskWeight;
+        this.expiredTaskCount = expiredTaskCount;
+        this.blockedWorkerCount = blockedWorkerCount;
+        this.compensatingWorkerCount = compensatingWorkerCount;
+        this.handedOffTaskCount = handedOffTaskCount;
+        this.queueStatistics = queueStatistics;
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    public int getQueuedTaskCount() {
+        return queuedTaskCount;
+    }
+
+    /**
+     * Total weight of the queued tasks as reported by the pool's task weigher.
+     * Equals {@link #getQueuedTaskCount()} when no weigher is configured.
+     */
+    public long getQueuedTaskWeight() {
+        return queuedTaskWeight;
+    }
+
+    /**
+     * Number of tasks submitted with a deadline that passed before they were started.
+     */
+    public long getExpiredTaskCount() {
+        return expiredTaskCount;
+    }
+
+    /**
+     * Number of workers currently inside {@link SimpleFixedThreadPool#managedBlock(SimpleFixedThreadPool.ManagedBlocker)}.
+     */
+    public int getBlockedWorkerCount() {
+        return blockedWorkerCount;
+    }
+
+    /**
+     * Number of temporary workers started to compensate for blocked ones.
+     */
+    public int getCompensatingWorkerCount() {
+        return compensatingWorkerCount;
+    }
+
+    /**
+     * Number of tasks handed directly to an idle worker without going through the queue.
+     */
+    public long getHandedOffTaskCount() {
+        return handedOffTaskCount;
+    }
+
+    /**
+     * Lock contention and wait metrics of the task queue, all zero unless
+     * {@link SimpleFixedThreadPool#enableQueueStatistics()} was called.
+     */
+    public QueueStatistics getQueueStatistics() {
+        return queueStatistics;
+    }
+
+    @Override
+    public String toString() {
+        return "PoolStatistics{" +
+                "poolSize=" + poolSize +
+                ", workerCount=" + workerCount +
+                ", queuedTaskCount=" + queuedTaskCount +
+                ", queuedTaskWeight=" + queuedTaskWeight +
+                ", expiredTaskCount=" + expiredTaskCount +
+                ", blockedWorkerCount=" + blockedWorkerCount +
+                ", compensatingWorkerCount=" + compensatingWorkerCount +
+                ", handedOffTaskCount=" + handedOffTaskCount +
+                ", queueStatistics=" + queueStatistics +
+                '}';
+    }
+}
@@ -0,0 +1,112 @@
+package edu.ted.executorservice;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point-in-time snapshot of the lock contention and wait metrics of a {@link SimpleLinkedBlockingQueue}.
+ * All values are zero unless the instrumentation was enabled with {@link SimpleLinkedBlockingQueue#enableStatistics()}.
+ */
+public class QueueStatistics {
+
+    static final QueueStatistics EMPTY = new QueueStatistics(0, 0, 0, 0, 0, 0, 0, 0, 0, 0);
+
+    private final long lockAcquireCount;
+    private final long contendedLockAcquireCount;
+    private final long totalLockAcquireNanos;
+    private final long maxLockAcquireNanos;
+    private final long producerWaitCount;
+    private final long totalProducerWaitNanos;
+    private final long consumerWaitCount;
+    private final long totalConsumerWaitNanos;
+    private final long readSignalCount;
+    private final long writeSignalCount;
+
+    QueueStatistics(long lockAcquireCount, long contendedLockAcquireCount, long totalLockAcquireNanos, long maxLockAcquireNanos,
+                    long producerWaitCount, long totalProducerWaitNanos, long consumerWaitCount, long totalConsumerWaitNanos,
+                    long readSignalCount, long writeSignalCount) {
+        this.lockAcquireCount = lockAcquireCount;
+        this.contendedLockAcquireCount = contendedLockAcquireCount;
+        this.totalLockAcquireNanos = totalLockAcquireNanos;
+        this.maxLockAcquireNanos = maxLockAcquireNanos;
+        this.producerWaitCount = producerWaitCount;
+        this.totalProducerWaitNanos = totalProducerWaitNanos;
+        this.consumerWaitCount = consumerWaitCount;
+        this.totalConsumerWaitNanos = totalConsumerWaitNanos;
+        this.readSignalCount = readSignalCount;
+        this.writeSignalCount = writeSignalCount;
+    }
+
+    public long getLockAcquireCount() {
+        return lockAcquireCount;
+    }
+
+    /**
+     * Number of lock acquires that found the lock already held by another thread.
+     */
+    public long getContendedLockAcquireCount() {
+        return contendedLockAcquireCount;
+    }
+
+    /**
+     * Sum of the time threads spent waiting for the queue lock.
+     */
+    public long getTotalLockAcquireTime(TimeUnit unit) {
+        return unit.convert(totalLockAcquireNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public long getMaxLockAcquireTime(TimeUnit unit) {
+        return unit.convert(maxLockAcquireNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Number of times a producer waited for free capacity.
+     */
+    public long getProducerWaitCount() {
+        return producerWaitCount;
+    }
+
+    public long getTotalProducerWaitTime(TimeUnit unit) {
+        return unit.convert(totalProducerWaitNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Number of times a consumer waited for an element in the empty queue.
+     */
+    public long getConsumerWaitCount() {
+        return consumerWaitCount;
+    }
+
+    public long getTotalConsumerWaitTime(TimeUnit unit) {
+        return unit.convert(totalConsumerWaitNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Number of signals sent to waiting consumers.
+     */
+    public long getReadSignalCount() {
+        return readSignalCount;
+    }
+
+    /**
+     * Number of signals sent to waiting producers.
+     */
+    public long getWriteSignalCount() {
+        return writeSignalCount;
+    }
+
+    @Override
+    public String toString() {
+        return "QueueStatistics{" +
+                "lockAcquireCount=" + lockAcquireCount +
+                ", contendedLockAcquireCount=" + contendedLockAcquireCount +
+                ", totalLockAcquireNanos=" + totalLockAcquireNanos +
+                ", maxLockAcquireNanos=" + maxLockAcquireNanos +
+                ", producerWaitCount=" + producerWaitCount +
+                ", totalProducerWaitNanos=" + totalProducerWaitNanos +
+                ", consumerWaitCount=" + consumerWaitCount +
+                ", totalConsumerWaitNanos=" + totalConsumerWaitNanos +
+                ", readSignalCount=" + readSignalCount +
+                ", writeSignalCount=" + writeSignalCount +
+                '}';
+    }
+}
@@ -0,0 +1,211 @@
+package edu.ted.executorservice;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Token bucket admission control for {@link SimpleFixedThreadPool}.
+ * The bucket starts full with {@code burst} tokens and refills at {@code permitsPerSecond};
+ * every task released to the pool queue takes one token.
+ * <p>
+ * In {@link SimpleFixedThreadPool.RateLimitMode#QUEUE} mode tasks are held in a separate queue
+ * and a single releaser thread moves them to the pool queue as tokens become available,
+ * so workers only ever see tasks that may run right away. The releaser takes a token before
+ * taking a task, so a task waiting for a token stays in the held queue and is drained on shutdown.
+ * On a graceful shutdown held tasks are cancelled, as no worker is left to run them.
+ * <p>
+ * {@link #trySubmit(FutureTask)} never blocks: in {@link SimpleFixedThreadPool.RateLimitMode#BLOCK} mode a task
+ * that finds no token is held and released by the releaser thread instead, which is started on first use.
+ */
+@Slf4j
+class RateLimiter {
+
+    private final double tokensPerNano;
+    private final double burst;
+    private final SimpleFixedThreadPool.RateLimitMode mode;
+    private final Consumer<FutureTask<?>> release;
+    private final Predicate<FutureTask<?>> tryRelease;
+    private final SimpleLinkedBlockingQueue<FutureTask<?>> heldTasks;
+    private Thread releaserThread;
+    private boolean isClosed;
+    private double tokens;
+    private long lastRefillNanos;
+
+    RateLimiter(double permitsPerSecond, int burst, SimpleFixedThreadPool.RateLimitMode mode,
+                Consumer<FutureTask<?>> release, Predicate<FutureTask<?>> tryRelease, Comparator<? super FutureTask<?>> order) {
+        if (!(permitsPerSecond > 0) || burst <= 0) {
+            throw new IllegalArgumentException("Rate and burst must be positive: " + permitsPerSecond + ", " + burst);
+        }
+        this.tokensPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = burst;
+        this.mode = mode;
+        this.release = release;
+        this.tryRelease = tryRelease;
+        this.tokens = burst;
+        this.lastRefillNanos = System.nanoTime();
+        if (mode == SimpleFixedThreadPool.RateLimitMode.REJECT) {
+            heldTasks = null;
+        } else {
+            heldTasks = new SimpleLinkedBlockingQueue<>(Integer.MAX_VALUE, Long.MAX_VALUE, t -> 1, order);
+        }
+        if (mode == SimpleFixedThreadPool.RateLimitMode.QUEUE) {
+            startReleaser();
+        }
+    }
+
+    /**
+     * Admits the task according to the mode: holds it until a token is available,
+     * blocks the caller until then or rejects it if no token is available right now.
+     *
+     * @throws RejectedExecutionException if the task is rejected or the caller is interrupted while blocked
+     */
+    void submit(FutureTask<?> task) {
+        switch (mode) {
+            case QUEUE:
+                heldTasks.add(task);
+                return;
+            case BLOCK:
+                try {
+                    acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RejectedExecutionException("Interrupted while waiting for the rate limit", e);
+                }
+                break;
+            default:
+                if (!tryAcquire()) {
+                    throw new RejectedExecutionException("Rate limit exceeded");
+                }
+        }
+        release.accept(task);
+    }
+
+    /**
+     * Admits the task without blocking the caller.
+     *
+     * @return false if a token was available but the pool queue is full, the token is given back
+     * @throws RejectedExecutionException if the mode is {@link SimpleFixedThreadPool.RateLimitMode#REJECT}
+     *                                    and no token is available right now
+     */
+    boolean trySubmit(FutureTask<?> task) {
+        switch (mode) {
+            case QUEUE:
+                heldTasks.add(task);
+                return true;
+            case BLOCK:
+                if (!tryAcquire()) {
+                    startReleaser();
+                    heldTasks.add(task);
+                    return true;
+                }
+                break;
+            default:
+                if (!tryAcquire()) {
+                    throw new RejectedExecutionException("Rate limit exceeded");
+                }
+        }
+        if (tryRelease.test(task)) {
+            return true;
+        }
+        giveBack();
+        return false;
+    }
+
+    int getHeldTaskCount() {
+        return heldTasks == null ? 0 : heldTasks.size();
+    }
+
+    void drainTo(Collection<? super FutureTask<?>> tasks) {
+        if (heldTasks != null) {
+            heldTasks.drainTo(tasks);
+        }
+    }
+
+    /**
+     * Cancels the held tasks, so nobody waits forever for a task that will not be released.
+     */
+    void cancelHeldTasks() {
+        if (heldTasks == null) {
+            return;
+        }
+        List<FutureTask<?>> tasks = new ArrayList<>();
+        heldTasks.drainTo(tasks);
+        for (FutureTask<?> task : tasks) {
+            task.cancel(false);
+        }
+    }
+
+    synchronized void close() {
+        isClosed = true;
+        if (releaserThread != null) {
+            releaserThread.interrupt();
+        }
+    }
+
+    synchronized boolean tryAcquire() {
+        refill();
+        if (tokens < 1) {
+            return false;
+        }
+        tokens--;
+        return true;
+    }
+
+    private synchronized void giveBack() {
+        tokens = Math.min(burst, tokens + 1);
+    }
+
+    private synchronized void startReleaser() {
+        if (releaserThread == null && !isClosed) {
+            releaserThread = new Thread(this::releaseLoop, "Rate limiter releaser");
+            releaserThread.setDaemon(true);
+            releaserThread.start();
+        }
+    }
+
+    private void acquire() throws InterruptedException {
+        while (!tryAcquire()) {
+            TimeUnit.NANOSECONDS.sleep(nanosUntilNextToken());
+        }
+    }
+
+    private synchronized long nanosUntilNextToken() {
+        refill();
+        return tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / tokensPerNano);
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - lastRefillNanos) * tokensPerNano);
+        lastRefillNanos = now;
+    }
+
+    private void releaseLoop() {
+        FutureTask<?> task = null;
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                acquire();
+                do {
+                    task = heldTasks.take();
+                } while (task.isDone());
+                release.accept(task);
+                task = null;
+            }
+        } catch (InterruptedException | RejectedExecutionException e) {
+            log.debug("Rate limiter releaser is stopped", e);
+            if (task != null) {
+                //taken from the held queue, so neither released nor drained on shutdown
+                task.cancel(false);
+            }
+        }
+    }
+}
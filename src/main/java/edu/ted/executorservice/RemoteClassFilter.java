@@ -0,0 +1,89 @@
+package edu.ted.executorservice;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Allow-list of the classes that may be deserialized from a remote peer, so a payload cannot instantiate
+ * arbitrary classes found on the classpath. Common JDK value, collection and exception classes are always allowed;
+ * task classes, the classes of their captured state and of their results must be allowed explicitly.
+ * Dynamic proxies are never allowed.
+ * <p>
+ * The check is done in {@link ObjectInputStream#resolveClass(ObjectStreamClass)}, which is available on Java 8
+ * where {@code java.io.ObjectInputFilter} does not exist yet.
+ */
+final class RemoteClassFilter {
+
+    private static final Set<String> DEFAULT_PACKAGES = new HashSet<>(Arrays.asList(
+            "java.lang", "java.util", "java.util.concurrent", "java.math", "java.time", "java.io"));
+    private static final Set<String> DEFAULT_CLASSES = new HashSet<>(Arrays.asList(
+            "java.lang.invoke.SerializedLambda", "boolean", "byte", "char", "short", "int", "long", "float", "double", "void"));
+
+    private final List<String> allowedPrefixes;
+
+    /**
+     * @param allowedPrefixes package prefixes ending with {@code '.'}, matching the package and its subpackages,
+     *                        or fully qualified class names
+     */
+    RemoteClassFilter(Collection<String> allowedPrefixes) {
+        this.allowedPrefixes = new ArrayList<>(allowedPrefixes);
+        for (String prefix : this.allowedPrefixes) {
+            if (prefix == null || prefix.isEmpty() || ".".equals(prefix)) {
+                throw new IllegalArgumentException("Allowed class prefix must name a package or a class: " + prefix);
+            }
+        }
+    }
+
+    boolean isAllowed(String className) {
+        String elementClassName = className;
+        while (elementClassName.startsWith("[")) {
+            elementClassName = elementClassName.substring(1);
+        }
+        if (elementClassName.length() != className.length()) {
+            if (!elementClassName.startsWith("L")) {
+                //array of primitives
+                return true;
+            }
+            elementClassName = elementClassName.substring(1, elementClassName.length() - 1);
+        }
+        if (DEFAULT_CLASSES.contains(elementClassName)) {
+            return true;
+        }
+        int packageEnd = elementClassName.lastIndexOf('.');
+        if (packageEnd > 0 && DEFAULT_PACKAGES.contains(elementClassName.substring(0, packageEnd))) {
+            return true;
+        }
+        for (String prefix : allowedPrefixes) {
+            if (prefix.endsWith(".") ? elementClassName.startsWith(prefix) : elementClassName.equals(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    Object deserialize(byte[] payload) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream input = new FilteringObjectInputStream(new ByteArrayInputStream(payload))) {
+            return input.readObject();
+        }
+    }
+
+    private class FilteringObjectInputStream extends ObjectInputStream {
+
+        private FilteringObjectInputStream(InputStream input) throws IOException {
+            super(input);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass descriptor) throws IOException, ClassNotFoundException {
+            if (!isAllowed(descriptor.getName())) {
+                throw new InvalidClassException(descriptor.getName(), "Class is not allowed to be deserialized from a remote peer");
+            }
+            return super.resolveClass(descriptor);
+        }
+
+        @Override
+        protected Class<?> resolveProxyClass(String[] interfaces) throws InvalidClassException {
+            throw new InvalidClassException(Arrays.toString(interfaces), "Dynamic proxies are not allowed to be deserialized from a remote peer");
+        }
+    }
+}
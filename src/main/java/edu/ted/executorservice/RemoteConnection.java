@@ -0,0 +1,321 @@
+package edu.ted.executorservice;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.*;
+
+/**
+ * Non-blocking framed connection between {@link RemoteDispatcher} and {@link RemoteWorkerNode}.
+ * Must only be used from the selector thread that owns its {@link SelectionKey}.
+ * <p>
+ * Frame layout: {@code [int length][byte type][int count]} followed by {@code count} messages
+ * {@code [long taskId][byte failed][int payloadLength][payload]}. A {@link #CREDITS} frame carries
+ * no messages, its count is the number of tasks the node grants to the dispatcher.
+ * Payloads are serialized by the producing thread, so the selector thread only copies bytes.
+ * <p>
+ * Before any credits or tasks are exchanged both peers prove they know the shared secret: the node sends a
+ * {@link #CHALLENGE} nonce, the dispatcher answers with an {@link #AUTH} frame holding its own nonce and the
+ * HMAC-SHA256 of the node nonce, and the node confirms with {@link #AUTH_OK} holding the HMAC of the dispatcher nonce.
+ * Each single-message handshake frame carries its data as the message payload.
+ */
+class RemoteConnection {
+
+    static final byte CREDITS = 1;
+    static final byte TASKS = 2;
+    static final byte RESULTS = 3;
+    static final byte CHALLENGE = 4;
+    static final byte AUTH = 5;
+    static final byte AUTH_OK = 6;
+
+    static final byte DISPATCHER_ROLE = 1;
+    static final byte NODE_ROLE = 2;
+    static final int NONCE_LENGTH = 32;
+    static final int PROOF_LENGTH = 32;
+    static final int MIN_SECRET_LENGTH = 16;
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final SecureRandom NONCE_SOURCE = new SecureRandom();
+
+    private static final int MAX_FRAME_LENGTH = 64 * 1024 * 1024;
+    private static final int FRAME_HEADER_LENGTH = Integer.BYTES + Byte.BYTES + Integer.BYTES;
+    private static final int MESSAGE_HEADER_LENGTH = Long.BYTES + Byte.BYTES + Integer.BYTES;
+
+    private final SocketChannel channel;
+    private final Queue<ByteBuffer> writeQueue = new ArrayDeque<>();
+    private SelectionKey selectionKey;
+    private ByteBuffer readBuffer = ByteBuffer.allocate(64 * 1024);
+    private byte[] challenge;
+    private boolean isAuthenticated;
+
+    RemoteConnection(SocketChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * @return the nonce this side sent to the peer, or {@code null} if none was sent yet
+     */
+    byte[] getChallenge() {
+        return challenge;
+    }
+
+    void setChallenge(byte[] challenge) {
+        this.challenge = challenge;
+    }
+
+    boolean isAuthenticated() {
+        return isAuthenticated;
+    }
+
+    void setAuthenticated() {
+        isAuthenticated = true;
+    }
+
+    void setSelectionKey(SelectionKey selectionKey) {
+        this.selectionKey = selectionKey;
+    }
+
+    SocketChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * Reads available bytes and decodes every complete frame.
+     *
+     * @throws EOFException if the peer closed the connection
+     * @throws IOException  if a frame is malformed, the connection must then be closed
+     */
+    List<Frame> read() throws IOException {
+        if (channel.read(readBuffer) < 0) {
+            throw new EOFException("Connection is closed by the peer");
+        }
+        List<Frame> frames = new ArrayList<>();
+        readBuffer.flip();
+        while (readBuffer.remaining() >= Integer.BYTES) {
+            int frameLength = readBuffer.getInt(readBuffer.position());
+            if (frameLength < FRAME_HEADER_LENGTH - Integer.BYTES || frameLength > MAX_FRAME_LENGTH) {
+                throw new IOException("Invalid frame length: " + frameLength);
+            }
+            if (readBuffer.remaining() < Integer.BYTES + frameLength) {
+                break;
+            }
+            readBuffer.getInt();
+            ByteBuffer frame = readBuffer.slice();
+            frame.limit(frameLength);
+            readBuffer.position(readBuffer.position() + frameLength);
+            frames.add(decodeFrame(frame));
+        }
+        readBuffer.compact();
+        if (!readBuffer.hasRemaining()) {
+            ByteBuffer largerBuffer = ByteBuffer.allocate(readBuffer.capacity() * 2);
+            readBuffer.flip();
+            largerBuffer.put(readBuffer);
+            readBuffer = largerBuffer;
+        }
+        return frames;
+    }
+
+    void sendCredits(int credits) throws IOException {
+        ByteBuffer frame = ByteBuffer.allocate(FRAME_HEADER_LENGTH);
+        frame.putInt(FRAME_HEADER_LENGTH - Integer.BYTES).put(CREDITS).putInt(credits).flip();
+        enqueue(frame);
+    }
+
+    void send(byte type, byte[] payload) throws IOException {
+        send(type, Collections.singletonList(new Message(0, false, payload)));
+    }
+
+    void send(byte type, List<Message> messages) throws IOException {
+        int frameLength = FRAME_HEADER_LENGTH;
+        for (Message message : messages) {
+            frameLength += MESSAGE_HEADER_LENGTH + message.payload.length;
+        }
+        ByteBuffer frame = ByteBuffer.allocate(frameLength);
+        frame.putInt(frameLength - Integer.BYTES).put(type).putInt(messages.size());
+        for (Message message : messages) {
+            frame.putLong(message.taskId).put((byte) (message.isFailed ? 1 : 0)).putInt(message.payload.length).put(message.payload);
+        }
+        frame.flip();
+        enqueue(frame);
+    }
+
+    /**
+     * Writes pending frames, called when the channel becomes writable.
+     */
+    void flush() throws IOException {
+        while (!writeQueue.isEmpty()) {
+            ByteBuffer frame = writeQueue.peek();
+            channel.write(frame);
+            if (frame.hasRemaining()) {
+                selectionKey.interestOps(selectionKey.interestOps() | SelectionKey.OP_WRITE);
+                return;
+            }
+            writeQueue.poll();
+        }
+        selectionKey.interestOps(selectionKey.interestOps() & ~SelectionKey.OP_WRITE);
+    }
+
+    void close() {
+        if (selectionKey != null) {
+            selectionKey.cancel();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            //nothing to do, the connection is dropped anyway
+        }
+    }
+
+    private void enqueue(ByteBuffer frame) throws IOException {
+        writeQueue.add(frame);
+        flush();
+    }
+
+    /**
+     * @param frame the frame content after its length, limited to exactly that length
+     */
+    private Frame decodeFrame(ByteBuffer frame) throws IOException {
+        byte type = frame.get();
+        int count = frame.getInt();
+        if (type == CREDITS) {
+            if (count < 0) {
+                throw new IOException("Invalid credit count: " + count);
+            }
+            checkFullyDecoded(frame);
+            return new Frame(type, count, null);
+        }
+        if (count < 0 || count > frame.remaining() / MESSAGE_HEADER_LENGTH) {
+            throw new IOException("Invalid message count: " + count);
+        }
+        List<Message> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (frame.remaining() < MESSAGE_HEADER_LENGTH) {
+                throw new IOException("Frame ends inside message " + i);
+            }
+            long taskId = frame.getLong();
+            boolean isFailed = frame.get() != 0;
+            int payloadLength = frame.getInt();
+            if (payloadLength < 0 || payloadLength > frame.remaining()) {
+                throw new IOException("Invalid payload length: " + payloadLength);
+            }
+            byte[] payload = new byte[payloadLength];
+            frame.get(payload);
+            messages.add(new Message(taskId, isFailed, payload));
+        }
+        checkFullyDecoded(frame);
+        return new Frame(type, count, messages);
+    }
+
+    private void checkFullyDecoded(ByteBuffer frame) throws IOException {
+        if (frame.hasRemaining()) {
+            throw new IOException("Frame has " + frame.remaining() + " unexpected trailing bytes");
+        }
+    }
+
+    static byte[] serialize(Object object) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeObject(object);
+        }
+        return bytes.toByteArray();
+    }
+
+    static byte[] newNonce() {
+        byte[] nonce = new byte[NONCE_LENGTH];
+        NONCE_SOURCE.nextBytes(nonce);
+        return nonce;
+    }
+
+    /**
+     * @return HMAC-SHA256 of the role and the nonce keyed with the shared secret; the role keeps a peer
+     * from reflecting a proof it received back to the other side
+     */
+    static byte[] prove(byte[] sharedSecret, byte role, byte[] nonce) {
+        try {
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(new SecretKeySpec(sharedSecret, MAC_ALGORITHM));
+            mac.update(role);
+            return mac.doFinal(nonce);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(MAC_ALGORITHM + " is not available", e);
+        }
+    }
+
+    /**
+     * Compares in constant time, so the proof cannot be guessed byte by byte.
+     */
+    static boolean isValidProof(byte[] sharedSecret, byte role, byte[] nonce, byte[] proof) {
+        return MessageDigest.isEqual(prove(sharedSecret, role, nonce), proof);
+    }
+
+    static byte[] checkSharedSecret(byte[] sharedSecret) {
+        if (sharedSecret == null || sharedSecret.length < MIN_SECRET_LENGTH) {
+            throw new IllegalArgumentException("Shared secret must have at least " + MIN_SECRET_LENGTH + " bytes");
+        }
+        return sharedSecret.clone();
+    }
+
+    /**
+     * @return the payload of a single-message handshake frame
+     * @throws IOException if the frame does not hold exactly one message of the expected length
+     */
+    static byte[] handshakePayload(Frame frame, int expectedLength) throws IOException {
+        if (frame.getMessages().size() != 1 || frame.getMessages().get(0).getPayload().length != expectedLength) {
+            throw new IOException("Malformed handshake frame of type " + frame.getType());
+        }
+        return frame.getMessages().get(0).getPayload();
+    }
+
+    static class Frame {
+        private final byte type;
+        private final int count;
+        private final List<Message> messages;
+
+        private Frame(byte type, int count, List<Message> messages) {
+            this.type = type;
+            this.count = count;
+            this.messages = messages;
+        }
+
+        byte getType() {
+            return type;
+        }
+
+        int getCount() {
+            return count;
+        }
+
+        List<Message> getMessages() {
+            return messages;
+        }
+    }
+
+    static class Message {
+        private final long taskId;
+        private final boolean isFailed;
+        private final byte[] payload;
+
+        Message(long taskId, boolean isFailed, byte[] payload) {
+            this.taskId = taskId;
+            this.isFailed = isFailed;
+            this.payload = payload;
+        }
+
+        long getTaskId() {
+            return taskId;
+        }
+
+        boolean isFailed() {
+            return isFailed;
+        }
+
+        byte[] getPayload() {
+            return payload;
+        }
+    }
+}
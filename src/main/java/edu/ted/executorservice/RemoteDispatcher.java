@@ -0,0 +1,328 @@
+package edu.ted.executorservice;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Client side of the distributed mode of {@link SimpleFixedThreadPool}: sends serialized tasks to
+ * {@link RemoteWorkerNode}s and completes their futures with the returned results.
+ * <p>
+ * All socket I/O happens on a single selector thread. Submitting threads serialize the task and
+ * hand it over through a concurrent queue. A node receives at most as many tasks as it has granted
+ * credits for, tasks are sent to the node with the most credits, and all tasks that fit into
+ * the credits are sent in a single frame.
+ * <p>
+ * A node is only used after it has proven it knows the shared secret of its link,
+ * and results are deserialized with the class filter of the link.
+ */
+@Slf4j
+class RemoteDispatcher implements Closeable {
+
+    private static final int MAX_BATCH_SIZE = 256;
+
+    private final Selector selector;
+    private final Thread selectorThread;
+    private final Queue<RemoteFutureTask<?>> pendingTasks = new ConcurrentLinkedQueue<>();
+    private final Queue<NodeLink> pendingConnections = new ConcurrentLinkedQueue<>();
+    private final List<NodeLink> nodeLinks = new ArrayList<>();
+    private final AtomicLong taskIdSequence = new AtomicLong();
+    private volatile boolean isRunning = true;
+    private volatile boolean isShutdown;
+
+    RemoteDispatcher() throws IOException {
+        selector = Selector.open();
+        selectorThread = new Thread(this::selectorLoop, "Remote dispatcher selector");
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+    }
+
+    void connect(InetSocketAddress address, byte[] sharedSecret, RemoteClassFilter classFilter) throws IOException {
+        byte[] secret = RemoteConnection.checkSharedSecret(sharedSecret);
+        SocketChannel channel = SocketChannel.open();
+        channel.configureBlocking(false);
+        channel.connect(address);
+        pendingConnections.add(new NodeLink(address, new RemoteConnection(channel), secret, classFilter));
+        selector.wakeup();
+    }
+
+    <T> RemoteFutureTask<T> submit(Callable<T> task) {
+        if (!(task instanceof Serializable)) {
+            throw new IllegalArgumentException("Remote task must be Serializable: " + task.getClass().getName());
+        }
+        if (isShutdown) {
+            throw new RejectedExecutionException("Remote dispatcher is shut down");
+        }
+        byte[] payload;
+        try {
+            payload = RemoteConnection.serialize(task);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Remote task cannot be serialized", e);
+        }
+        RemoteFutureTask<T> futureTask = new RemoteFutureTask<>(task, taskIdSequence.incrementAndGet(), payload);
+        pendingTasks.add(futureTask);
+        selector.wakeup();
+        return futureTask;
+    }
+
+    /**
+     * Stops accepting tasks, the connections are closed once every submitted task is completed.
+     */
+    void shutdown() {
+        isShutdown = true;
+        selector.wakeup();
+    }
+
+    /**
+     * Closes the connections immediately, not completed tasks are cancelled.
+     */
+    @Override
+    public void close() {
+        isShutdown = true;
+        isRunning = false;
+        selector.wakeup();
+    }
+
+    private void selectorLoop() {
+        try {
+            while (isRunning) {
+                selector.select();
+                registerPendingConnections();
+                for (Iterator<SelectionKey> keys = selector.selectedKeys().iterator(); keys.hasNext(); ) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    handleKey(key);
+                }
+                dispatchPendingTasks();
+                if (isShutdown && pendingTasks.isEmpty() && !hasInFlightTasks()) {
+                    isRunning = false;
+                }
+            }
+        } catch (IOException e) {
+            log.error("Remote dispatcher selector failed", e);
+        } finally {
+            closeAll();
+        }
+    }
+
+    private void registerPendingConnections() throws IOException {
+        NodeLink nodeLink;
+        while ((nodeLink = pendingConnections.poll()) != null) {
+            SocketChannel channel = nodeLink.connection.getChannel();
+            int interestOps = channel.isConnected() ? SelectionKey.OP_READ : SelectionKey.OP_CONNECT;
+            nodeLink.connection.setSelectionKey(channel.register(selector, interestOps, nodeLink));
+            nodeLinks.add(nodeLink);
+        }
+    }
+
+    private void handleKey(SelectionKey key) {
+        NodeLink nodeLink = (NodeLink) key.attachment();
+        try {
+            if (key.isConnectable() && nodeLink.connection.getChannel().finishConnect()) {
+                key.interestOps(SelectionKey.OP_READ);
+                log.debug("Connected to remote worker node {}", nodeLink.address);
+            }
+            if (key.isValid() && key.isReadable()) {
+                for (RemoteConnection.Frame frame : nodeLink.connection.read()) {
+                    handleFrame(nodeLink, frame);
+                }
+            }
+            if (key.isValid() && key.isWritable()) {
+                nodeLink.connection.flush();
+            }
+        } catch (IOException e) {
+            disconnect(nodeLink, e);
+        }
+    }
+
+    /**
+     * Credits and results are only accepted from a node that has proven it knows the shared secret.
+     */
+    private void handleFrame(NodeLink nodeLink, RemoteConnection.Frame frame) throws IOException {
+        RemoteConnection connection = nodeLink.connection;
+        if (connection.isAuthenticated() && frame.getType() == RemoteConnection.CREDITS) {
+            nodeLink.credits += frame.getCount();
+        } else if (connection.isAuthenticated() && frame.getType() == RemoteConnection.RESULTS) {
+            completeTasks(nodeLink, frame.getMessages());
+        } else if (frame.getType() == RemoteConnection.CHALLENGE && connection.getChallenge() == null) {
+            byte[] nodeNonce = RemoteConnection.handshakePayload(frame, RemoteConnection.NONCE_LENGTH);
+            connection.setChallenge(RemoteConnection.newNonce());
+            byte[] proof = RemoteConnection.prove(nodeLink.sharedSecret, RemoteConnection.DISPATCHER_ROLE, nodeNonce);
+            byte[] payload = Arrays.copyOf(connection.getChallenge(), RemoteConnection.NONCE_LENGTH + proof.length);
+            System.arraycopy(proof, 0, payload, RemoteConnection.NONCE_LENGTH, proof.length);
+            connection.send(RemoteConnection.AUTH, payload);
+        } else if (frame.getType() == RemoteConnection.AUTH_OK && connection.getChallenge() != null && !connection.isAuthenticated()) {
+            byte[] proof = RemoteConnection.handshakePayload(frame, RemoteConnection.PROOF_LENGTH);
+            if (!RemoteConnection.isValidProof(nodeLink.sharedSecret, RemoteConnection.NODE_ROLE, connection.getChallenge(), proof)) {
+                throw new IOException("Remote worker node failed authentication");
+            }
+            connection.setAuthenticated();
+            log.debug("Remote worker node {} is authenticated", nodeLink.address);
+        } else {
+            throw new IOException("Unexpected frame of type " + frame.getType() + " from remote worker node");
+        }
+    }
+
+    private void completeTasks(NodeLink nodeLink, List<RemoteConnection.Message> results) {
+        for (RemoteConnection.Message result : results) {
+            nodeLink.credits++;
+            RemoteFutureTask<?> task = nodeLink.inFlightTasks.remove(result.getTaskId());
+            if (task == null) {
+                continue;
+            }
+            try {
+                Object value = nodeLink.classFilter.deserialize(result.getPayload());
+                if (result.isFailed()) {
+                    task.fail((Throwable) value);
+                } else {
+                    task.complete(value);
+                }
+            } catch (IOException | ClassNotFoundException | ClassCastException e) {
+                task.fail(e);
+            }
+        }
+    }
+
+    private void dispatchPendingTasks() {
+        while (!pendingTasks.isEmpty()) {
+            NodeLink nodeLink = nodeLinkWithMostCredits();
+            if (nodeLink == null) {
+                if (nodeLinks.isEmpty() && pendingConnections.isEmpty()) {
+                    failPendingTasks(new IOException("No remote worker node is connected"));
+                }
+                return;
+            }
+            List<RemoteConnection.Message> batch = new ArrayList<>(Math.min(nodeLink.credits, MAX_BATCH_SIZE));
+            RemoteFutureTask<?> task;
+            while (batch.size() < nodeLink.credits && batch.size() < MAX_BATCH_SIZE && (task = pendingTasks.poll()) != null) {
+                if (task.isDone()) {
+                    continue;
+                }
+                nodeLink.inFlightTasks.put(task.taskId, task);
+                batch.add(new RemoteConnection.Message(task.taskId, false, task.payload));
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            nodeLink.credits -= batch.size();
+            try {
+                nodeLink.connection.send(RemoteConnection.TASKS, batch);
+            } catch (IOException e) {
+                disconnect(nodeLink, e);
+            }
+        }
+    }
+
+    private NodeLink nodeLinkWithMostCredits() {
+        NodeLink bestLink = null;
+        for (NodeLink nodeLink : nodeLinks) {
+            if (nodeLink.credits > 0 && (bestLink == null || nodeLink.credits > bestLink.credits)) {
+                bestLink = nodeLink;
+            }
+        }
+        return bestLink;
+    }
+
+    private boolean hasInFlightTasks() {
+        for (NodeLink nodeLink : nodeLinks) {
+            if (!nodeLink.inFlightTasks.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void disconnect(NodeLink nodeLink, IOException cause) {
+        log.warn("Connection to remote worker node {} is lost", nodeLink.address, cause);
+        nodeLink.connection.close();
+        nodeLinks.remove(nodeLink);
+        for (RemoteFutureTask<?> task : nodeLink.inFlightTasks.values()) {
+            task.fail(cause);
+        }
+        nodeLink.inFlightTasks.clear();
+    }
+
+    private void failPendingTasks(Throwable cause) {
+        RemoteFutureTask<?> task;
+        while ((task = pendingTasks.poll()) != null) {
+            task.fail(cause);
+        }
+    }
+
+    private void closeAll() {
+        for (NodeLink nodeLink : nodeLinks) {
+            nodeLink.connection.close();
+            for (RemoteFutureTask<?> task : nodeLink.inFlightTasks.values()) {
+                task.cancel(false);
+            }
+        }
+        nodeLinks.clear();
+        RemoteFutureTask<?> task;
+        while ((task = pendingTasks.poll()) != null) {
+            task.cancel(false);
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            log.debug("Remote dispatcher is closed with error", e);
+        }
+    }
+
+    /**
+     * Future of a task executed on a remote worker node, completed by the dispatcher.
+     */
+    static class RemoteFutureTask<T> extends SimpleFutureTask<T> {
+        private final long taskId;
+        private final byte[] payload;
+
+        private RemoteFutureTask(Callable<T> task, long taskId, byte[] payload) {
+            super(task);
+            this.taskId = taskId;
+            this.payload = payload;
+        }
+
+        /**
+         * Does nothing: remote tasks are executed by the worker node only and completed by the dispatcher.
+         */
+        @Override
+        public void run() {
+            log.debug("Remote task {} is not run locally", taskId);
+        }
+
+        @SuppressWarnings("unchecked")
+        private void complete(Object value) {
+            set((T) value);
+        }
+
+        private void fail(Throwable cause) {
+            setException(cause);
+        }
+    }
+
+    private static class NodeLink {
+        private final InetSocketAddress address;
+        private final RemoteConnection connection;
+        private final byte[] sharedSecret;
+        private final RemoteClassFilter classFilter;
+        private final Map<Long, RemoteFutureTask<?>> inFlightTasks = new HashMap<>();
+        private int credits;
+
+        private NodeLink(InetSocketAddress address, RemoteConnection connection, byte[] sharedSecret, RemoteClassFilter classFilter) {
+            this.address = address;
+            this.connection = connection;
+            this.sharedSecret = sharedSecret;
+            this.classFilter = classFilter;
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package edu.ted.executorservice;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Worker node process for the distributed mode of {@link SimpleFixedThreadPool}.
+ * Accepts dispatcher connections over non-blocking sockets and runs the received serialized
+ * {@link Callable}s on a local {@link SimpleFixedThreadPool}. Every connection is granted
+ * {@code 2 * poolSize} credits up front; each returned result gives one credit back,
+ * so a dispatcher never has more tasks queued on the node than it was granted.
+ * Results completed between two selector wake-ups are sent back in a single frame.
+ * <p>
+ * A received task runs arbitrary code, so a dispatcher must first prove it knows the shared secret,
+ * and only allow-listed classes are deserialized. Still, listen on a loopback or otherwise trusted address only.
+ * <p>
+ * Started standalone with {@code java edu.ted.executorservice.RemoteWorkerNode <port> <poolSize> [bindAddress]}.
+ * It listens on the loopback address unless a bind address is given. The shared secret is read from the
+ * {@value #SECRET_VARIABLE} environment variable, the comma separated allowed class prefixes
+ * from {@value #ALLOWED_CLASSES_VARIABLE}.
+ */
+@Slf4j
+public class RemoteWorkerNode implements Closeable {
+
+    static final String SECRET_VARIABLE = "REMOTE_WORKER_SECRET";
+    static final String ALLOWED_CLASSES_VARIABLE = "REMOTE_WORKER_ALLOWED_CLASSES";
+
+    private final SimpleFixedThreadPool executor;
+    private final byte[] sharedSecret;
+    private final RemoteClassFilter classFilter;
+    private final int creditsPerConnection;
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final Queue<CompletedTask> completedTasks = new ConcurrentLinkedQueue<>();
+    private final Thread selectorThread;
+    private final LongAdder completedTaskCount = new LongAdder();
+    private volatile boolean isRunning = true;
+
+    /**
+     * @param bindAddress          address to listen on, a loopback address unless the node must be reachable from other hosts
+     * @param sharedSecret         secret a dispatcher must prove to know before it can send tasks, at least 16 bytes
+     * @param allowedClassPrefixes packages (ending with {@code '.'}) or class names of the tasks, their captured state
+     *                             and results that may be deserialized besides common JDK classes
+     */
+    public RemoteWorkerNode(InetSocketAddress bindAddress, int poolSize, byte[] sharedSecret, Collection<String> allowedClassPrefixes) throws IOException {
+        this.sharedSecret = RemoteConnection.checkSharedSecret(sharedSecret);
+        this.classFilter = new RemoteClassFilter(allowedClassPrefixes);
+        this.executor = new SimpleFixedThreadPool(poolSize);
+        this.creditsPerConnection = poolSize * 2;
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(bindAddress);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        selectorThread = new Thread(this::selectorLoop, "Remote worker node selector");
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 0;
+        int poolSize = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        InetSocketAddress bindAddress = args.length > 2
+                ? new InetSocketAddress(args[2], port)
+                : new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+        String secret = System.getenv(SECRET_VARIABLE);
+        if (secret == null) {
+            throw new IllegalArgumentException("Shared secret must be set in the " + SECRET_VARIABLE + " environment variable");
+        }
+        String allowedClasses = System.getenv(ALLOWED_CLASSES_VARIABLE);
+        List<String> allowedClassPrefixes = allowedClasses == null || allowedClasses.trim().isEmpty()
+                ? Collections.emptyList()
+                : Arrays.asList(allowedClasses.trim().split("\\s*,\\s*"));
+        RemoteWorkerNode node = new RemoteWorkerNode(bindAddress, poolSize, secret.getBytes(StandardCharsets.UTF_8), allowedClassPrefixes);
+        node.start();
+        log.info("RemoteWorkerNode listening on {}", node.serverChannel.getLocalAddress());
+    }
+
+    public void start() {
+        selectorThread.start();
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    public long getCompletedTaskCount() {
+        return completedTaskCount.sum();
+    }
+
+    @Override
+    public void close() {
+        isRunning = false;
+        selector.wakeup();
+        executor.shutdownNow();
+    }
+
+    private void selectorLoop() {
+        try {
+            while (isRunning) {
+                selector.select();
+                for (Iterator<SelectionKey> keys = selector.selectedKeys().iterator(); keys.hasNext(); ) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    handleKey(key);
+                }
+                sendResults();
+            }
+        } catch (IOException e) {
+            log.error("Remote worker node selector failed", e);
+        } finally {
+            closeAll();
+        }
+    }
+
+    private void handleKey(SelectionKey key) throws IOException {
+        if (!key.isValid()) {
+            return;
+        }
+        if (key.isAcceptable()) {
+            accept();
+            return;
+        }
+        RemoteConnection connection = (RemoteConnection) key.attachment();
+        try {
+            if (key.isReadable()) {
+                for (RemoteConnection.Frame frame : connection.read()) {
+                    handleFrame(connection, frame);
+                }
+            }
+            if (key.isValid() && key.isWritable()) {
+                connection.flush();
+            }
+        } catch (IOException e) {
+            log.debug("Dispatcher connection is closed", e);
+            connection.close();
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        RemoteConnection connection = new RemoteConnection(channel);
+        connection.setSelectionKey(channel.register(selector, SelectionKey.OP_READ, connection));
+        connection.setChallenge(RemoteConnection.newNonce());
+        connection.send(RemoteConnection.CHALLENGE, connection.getChallenge());
+        log.debug("Dispatcher connected from {}", channel.getRemoteAddress());
+    }
+
+    /**
+     * Tasks are only accepted once the dispatcher has answered the challenge, any other frame closes the connection.
+     */
+    private void handleFrame(RemoteConnection connection, RemoteConnection.Frame frame) throws IOException {
+        if (frame.getType() == RemoteConnection.TASKS && connection.isAuthenticated()) {
+            runTasks(connection, frame.getMessages());
+        } else if (frame.getType() == RemoteConnection.AUTH && !connection.isAuthenticated()) {
+            authenticate(connection, frame);
+        } else {
+            log.warn("Unexpected frame of type {} from dispatcher {}, closing the connection", frame.getType(), connection.getChannel().getRemoteAddress());
+            throw new IOException("Unexpected frame of type " + frame.getType());
+        }
+    }
+
+    private void authenticate(RemoteConnection connection, RemoteConnection.Frame frame) throws IOException {
+        byte[] payload = RemoteConnection.handshakePayload(frame, RemoteConnection.NONCE_LENGTH + RemoteConnection.PROOF_LENGTH);
+        byte[] dispatcherNonce = Arrays.copyOfRange(payload, 0, RemoteConnection.NONCE_LENGTH);
+        byte[] proof = Arrays.copyOfRange(payload, RemoteConnection.NONCE_LENGTH, payload.length);
+        if (!RemoteConnection.isValidProof(sharedSecret, RemoteConnection.DISPATCHER_ROLE, connection.getChallenge(), proof)) {
+            log.warn("Dispatcher {} failed authentication, closing the connection", connection.getChannel().getRemoteAddress());
+            throw new IOException("Dispatcher failed authentication");
+        }
+        connection.setAuthenticated();
+        connection.send(RemoteConnection.AUTH_OK, RemoteConnection.prove(sharedSecret, RemoteConnection.NODE_ROLE, dispatcherNonce));
+        connection.sendCredits(creditsPerConnection);
+        log.debug("Dispatcher {} is authenticated", connection.getChannel().getRemoteAddress());
+    }
+
+    private void runTasks(RemoteConnection connection, List<RemoteConnection.Message> messages) {
+        for (RemoteConnection.Message message : messages) {
+            SimpleFutureTask<Object> task = new SimpleFutureTask<>(() -> {
+                Callable<?> callable = (Callable<?>) classFilter.deserialize(message.getPayload());
+                return callable.call();
+            });
+            task.addCompletionListener(() -> {
+                completedTaskCount.increment();
+                completedTasks.add(new CompletedTask(connection, encodeResult(message.getTaskId(), task)));
+                selector.wakeup();
+            });
+            executor.internalSubmit(task);
+        }
+    }
+
+    private RemoteConnection.Message encodeResult(long taskId, SimpleFutureTask<Object> task) {
+        try {
+            return new RemoteConnection.Message(taskId, false, RemoteConnection.serialize(task.get()));
+        } catch (ExecutionException e) {
+            return encodeFailure(taskId, e.getCause());
+        } catch (Exception e) {
+            return encodeFailure(taskId, e);
+        }
+    }
+
+    private RemoteConnection.Message encodeFailure(long taskId, Throwable failure) {
+        try {
+            return new RemoteConnection.Message(taskId, true, RemoteConnection.serialize(failure));
+        } catch (IOException e) {
+            try {
+                return new RemoteConnection.Message(taskId, true, RemoteConnection.serialize(new NotSerializableException(failure.toString())));
+            } catch (IOException impossible) {
+                throw new IllegalStateException(impossible);
+            }
+        }
+    }
+
+    private void sendResults() {
+        if (completedTasks.isEmpty()) {
+            return;
+        }
+        Map<RemoteConnection, List<RemoteConnection.Message>> batches = new HashMap<>();
+        CompletedTask completedTask;
+        while ((completedTask = completedTasks.poll()) != null) {
+            batches.computeIfAbsent(completedTask.connection, c -> new ArrayList<>()).add(completedTask.result);
+        }
+        for (Map.Entry<RemoteConnection, List<RemoteConnection.Message>> batch : batches.entrySet()) {
+            RemoteConnection connection = batch.getKey();
+            if (!connection.getChannel().isOpen()) {
+                continue;
+            }
+            try {
+                connection.send(RemoteConnection.RESULTS, batch.getValue());
+            } catch (IOException e) {
+                log.debug("Results cannot be sent, dispatcher connection is closed", e);
+                connection.close();
+            }
+        }
+    }
+
+    private void closeAll() {
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof RemoteConnection) {
+                ((RemoteConnection) key.attachment()).close();
+            }
+        }
+        try {
+            serverChannel.close();
+            selector.close();
+        } catch (IOException e) {
+            log.debug("Remote worker node is closed with error", e);
+        }
+    }
+
+    private static class CompletedTask {
+        private final RemoteConnection connection;
+        private final RemoteConnection.Message result;
+
+        private CompletedTask(RemoteConnection connection, RemoteConnection.Message result) {
+            this.connection = connection;
+            this.result = result;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package edu.ted.executorservice;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One set of {@link SimpleWorker}s shared by several logical {@link ExecutorService}s.
+ * <p>
+ * Every executor created by {@link #newExecutor(String, int, int)} has its own bounded queue and its own
+ * shutdown and termination state, while the workers serve all queues by weighted deficit round-robin.
+ * Subsystems that would each keep an idle pool of their own can share the threads instead.
+ */
+@Slf4j
+public class SharedWorkerGroup {
+
+    private final SimpleFixedThreadPool workerPool;
+    private final List<SharedWorkerGroupExecutor> executors = new ArrayList<>();
+    private final CountDownLatch terminationLatch = new CountDownLatch(1);
+    private boolean isShutdown;
+    private int terminatedExecutorCount;
+
+    public SharedWorkerGroup(int workerCount) {
+        this.workerPool = new SimpleFixedThreadPool(workerCount);
+    }
+
+    /**
+     * Creates a logical executor served by the workers of the group.
+     *
+     * @param name           unique executor name, used in {@link #getExecutorStatistics()}
+     * @param weight         number of tasks the executor gets per round relative to other executors
+     * @param maxQueuedTasks capacity of the executor queue, submissions beyond it are rejected
+     * @throws IllegalStateException if the group is shut down
+     */
+    public synchronized ExecutorService newExecutor(String name, int weight, int maxQueuedTasks) {
+        if (isShutdown) {
+            throw new IllegalStateException("Worker group is shut down");
+        }
+        workerPool.registerTenant(Objects.requireNonNull(name), weight, maxQueuedTasks);
+        SharedWorkerGroupExecutor executor = new SharedWorkerGroupExecutor(workerPool, name, this::onExecutorTerminated);
+        executors.add(executor);
+        return executor;
+    }
+
+    /**
+     * Shuts down every executor of the group; the workers stop once all executors have terminated.
+     */
+    public void shutdown() {
+        for (SharedWorkerGroupExecutor executor : markShutdown()) {
+            executor.shutdown();
+        }
+        tryTerminate();
+    }
+
+    /**
+     * Shuts down every executor of the group with {@link ExecutorService#shutdownNow()} and stops the workers.
+     */
+    public void shutdownNow() {
+        for (SharedWorkerGroupExecutor executor : markShutdown()) {
+            executor.shutdownNow();
+        }
+        workerPool.shutdownNow();
+        tryTerminate();
+    }
+
+    public synchronized boolean isShutdown() {
+        return isShutdown;
+    }
+
+    public boolean isTerminated() {
+        return terminationLatch.getCount() == 0;
+    }
+
+    /**
+     * Waits until the group is shut down and all of its executors have terminated.
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminationLatch.await(timeout, unit);
+    }
+
+    public PoolStatistics getStatistics() {
+        return workerPool.getStatistics();
+    }
+
+    /**
+     * Queue metrics of every executor of the group by executor name.
+     */
+    public Map<String, TenantStatistics> getExecutorStatistics() {
+        return workerPool.getTenantStatistics();
+    }
+
+    private synchronized List<SharedWorkerGroupExecutor> markShutdown() {
+        isShutdown = true;
+        return new ArrayList<>(executors);
+    }
+
+    private synchronized void onExecutorTerminated() {
+        terminatedExecutorCount++;
+        tryTerminate();
+    }
+
+    private synchronized void tryTerminate() {
+        if (isShutdown && terminatedExecutorCount == executors.size() && terminationLatch.getCount() > 0) {
+            log.debug("All executors of the worker group are terminated");
+            workerPool.shutdown();
+            terminationLatch.countDown();
+        }
+    }
+}
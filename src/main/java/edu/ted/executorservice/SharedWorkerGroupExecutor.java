@@ -0,0 +1,115 @@
+package edu.ted.executorservice;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+
+/**
+ * Logical executor of a {@link SharedWorkerGroup}. Its tasks are queued in its own tenant sub-queue
+ * of the shared worker pool; shutdown and termination only concern the tasks submitted to this executor.
+ */
+@Slf4j
+class SharedWorkerGroupExecutor extends AbstractExecutorService {
+
+    private final SimpleFixedThreadPool workerPool;
+    private final String name;
+    private final Runnable terminationListener;
+    private final Set<SimpleFutureTask<?>> activeTasks = ConcurrentHashMap.newKeySet();
+    private final CountDownLatch terminationLatch = new CountDownLatch(1);
+    private volatile boolean isShutdown;
+
+    SharedWorkerGroupExecutor(SimpleFixedThreadPool workerPool, String name, Runnable terminationListener) {
+        this.workerPool = workerPool;
+        this.name = name;
+        this.terminationListener = terminationListener;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        SimpleFutureTask<?> task = command instanceof SimpleFutureTask ? (SimpleFutureTask<?>) command : new SimpleFutureTask<>(command, null);
+        synchronized (this) {
+            if (isShutdown) {
+                throw new RejectedExecutionException("Executor " + name + " is shut down");
+            }
+            activeTasks.add(task);
+        }
+        task.addCompletionListener(() -> completeTask(task));
+        try {
+            workerPool.internalSubmitForTenant(name, task);
+        } catch (RejectedExecutionException e) {
+            completeTask(task);
+            throw e;
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        synchronized (this) {
+            isShutdown = true;
+        }
+        tryTerminate();
+    }
+
+    /**
+     * Removes the queued tasks of this executor and cancels its running tasks with an interrupt.
+     * Workers of the group keep serving the other executors.
+     */
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown();
+        List<Runnable> notStartedTasks = new ArrayList<>();
+        workerPool.drainTenantTasks(name, notStartedTasks);
+        for (Runnable task : notStartedTasks) {
+            activeTasks.remove(task);
+        }
+        for (SimpleFutureTask<?> task : activeTasks) {
+            task.cancel(true);
+        }
+        tryTerminate();
+        return notStartedTasks;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return isShutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return terminationLatch.getCount() == 0;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminationLatch.await(timeout, unit);
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+        return new SimpleFutureTask<>(callable);
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+        return new SimpleFutureTask<>(runnable, value);
+    }
+
+    private void completeTask(SimpleFutureTask<?> task) {
+        activeTasks.remove(task);
+        tryTerminate();
+    }
+
+    private void tryTerminate() {
+        synchronized (this) {
+            if (!isShutdown || !activeTasks.isEmpty() || terminationLatch.getCount() == 0) {
+                return;
+            }
+            terminationLatch.countDown();
+        }
+        log.debug("Executor {} is terminated", name);
+        terminationListener.run();
+    }
+}
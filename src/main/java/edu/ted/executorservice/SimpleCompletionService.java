@@ -0,0 +1,99 @@
+package edu.ted.executorservice;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link CompletionService} backed by {@link SimpleFixedThreadPool}: futures of the submitted tasks
+ * are handed out in the order the tasks finish. Iterating over the service blocks until the next
+ * submitted task finishes and ends once every submitted task has been handed out.
+ */
+public class SimpleCompletionService<T> implements CompletionService<T>, Iterable<Future<T>> {
+
+    private final SimpleFixedThreadPool executor;
+    private final SimpleLinkedBlockingQueue<Future<T>> completedTasks = new SimpleLinkedBlockingQueue<>();
+    private final AtomicInteger notRetrievedCount = new AtomicInteger();
+
+    public SimpleCompletionService(SimpleFixedThreadPool executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public Future<T> submit(Callable<T> task) {
+        return submitTask(new SimpleFutureTask<>(task));
+    }
+
+    @Override
+    public Future<T> submit(Runnable task, T result) {
+        return submitTask(new SimpleFutureTask<>(task, result));
+    }
+
+    @Override
+    public Future<T> take() throws InterruptedException {
+        return retrieved(completedTasks.take());
+    }
+
+    @Override
+    public Future<T> poll() {
+        return retrieved(completedTasks.poll());
+    }
+
+    @Override
+    public Future<T> poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return retrieved(completedTasks.poll(timeout, unit));
+    }
+
+    /**
+     * @return number of submitted tasks whose futures have not been taken or polled yet
+     */
+    public int getPendingCount() {
+        return notRetrievedCount.get();
+    }
+
+    @Override
+    public Iterator<Future<T>> iterator() {
+        return new Iterator<Future<T>>() {
+            @Override
+            public boolean hasNext() {
+                return notRetrievedCount.get() > 0;
+            }
+
+            @Override
+            public Future<T> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                try {
+                    return take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new CompletionException(e);
+                }
+            }
+        };
+    }
+
+    Future<T> submitTask(SimpleFutureTask<T> futureTask) {
+        futureTask.addCompletionListener(() -> completedTasks.add(futureTask));
+        notRetrievedCount.incrementAndGet();
+        try {
+            return executor.internalSubmit(futureTask);
+        } catch (RuntimeException e) {
+            notRetrievedCount.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private Future<T> retrieved(Future<T> future) {
+        if (future != null) {
+            notRetrievedCount.decrementAndGet();
+        }
+        return future;
+    }
+}
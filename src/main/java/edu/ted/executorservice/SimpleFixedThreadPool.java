@@ -2,26 +2,88 @@ package edu.ted.executorservice;
 
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 @Slf4j
 public class SimpleFixedThreadPool implements ExecutorService {
 
+    /**
+     * Earliest deadline first; tasks without a deadline keep FIFO order behind all tasks with a deadline.
+     */
+    private static final Comparator<Runnable> DEADLINE_ORDER = (first, second) -> {
+        boolean firstHasDeadline = first instanceof SimpleFutureTask && ((SimpleFutureTask<?>) first).hasDeadline();
+        boolean secondHasDeadline = second instanceof SimpleFutureTask && ((SimpleFutureTask<?>) second).hasDeadline();
+        if (firstHasDeadline && secondHasDeadline) {
+            return Long.signum(((SimpleFutureTask<?>) first).getDeadline() - ((SimpleFutureTask<?>) second).getDeadline());
+        }
+        return Boolean.compare(secondHasDeadline, firstHasDeadline);
+    };
+
+    private static final ThreadLocal<SimpleFixedThreadPool> CURRENT_POOL = new ThreadLocal<>();
+
     private final int poolSize;
     private final AtomicInteger workersCount = new AtomicInteger(0);
+    private final AtomicInteger blockedWorkersCount = new AtomicInteger(0);
+    private final AtomicInteger compensatingWorkersCount = new AtomicInteger(0);
+    private volatile int maxCompensatingWorkers;
     private final Semaphore shutdownSemaphore = new Semaphore(1);
     private final CountDownLatch terminationLatch;
-    private final SimpleLinkedBlockingQueue<FutureTask<?>> queue = new SimpleLinkedBlockingQueue<>();
+    private final Object compensatingWorkersMonitor = new Object();
+    private int liveCompensatingWorkersCount;
+    private final BlockingQueue<Runnable> queue;
     private final List<SimpleWorker> workerList;
+    private final Deque<SimpleWorker> idleWorkers = new ConcurrentLinkedDeque<>();
+    private final LongAdder handedOffTaskCount = new LongAdder();
+    private final Queue<Runnable> capacityWaiters = new ConcurrentLinkedQueue<>();
+    private final Runnable capacityWaitersNotifier = this::notifyCapacityWaiters;
+    private final ConcurrentMap<Object, KeyedTask<?>> inFlightKeyedTasks = new ConcurrentHashMap<>();
+    private volatile KeyedResultCache keyedResultCache;
+    private final TenantScheduler tenantScheduler = new TenantScheduler();
+    private RemoteDispatcher remoteDispatcher;
+    private volatile RateLimiter rateLimiter;
+    private volatile WorkerPlacement workerPlacement;
+    private final LongAdder expiredTaskCount = new LongAdder();
+    private final Runnable expiredTaskCounter = expiredTaskCount::increment;
     private volatile boolean isRunning;
 
     public SimpleFixedThreadPool(int poolSize) {
+        this(poolSize, new SimpleLinkedBlockingQueue<>(Integer.MAX_VALUE, Long.MAX_VALUE, futureTask -> 1, DEADLINE_ORDER));
+    }
+
+    /**
+     * Creates a pool whose queue is bounded by the total weight of the waiting tasks instead of their count.
+     * Submission blocks while the queued weight would exceed {@code maxQueuedWeight}.
+     *
+     * @param taskWeigher reports the cost of a queued task; it is given the submitted {@link Callable} or {@link Runnable},
+     *                    or the source element for tasks of {@link #parallelMap(Iterator, Function, int, boolean)}
+     */
+    public SimpleFixedThreadPool(int poolSize, long maxQueuedWeight, ToLongFunction<Object> taskWeigher) {
+        this(poolSize, new SimpleLinkedBlockingQueue<>(Integer.MAX_VALUE, maxQueuedWeight, weighQueuedTask(taskWeigher), DEADLINE_ORDER));
+    }
+
+    /**
+     * Creates a pool whose workers take tasks from the given queue, so any {@link BlockingQueue}
+     * implementation can be used and benchmarked with the same pool.
+     * The queue order replaces the earliest-deadline-first order of the default queue, and queue
+     * statistics and O(1) removal of cancelled tasks are only available for a {@link SimpleLinkedBlockingQueue}.
+     * The queue must be empty and must not be shared with other pools.
+     */
+    public SimpleFixedThreadPool(int poolSize, BlockingQueue<Runnable> queue) {
         this.poolSize = poolSize;
+        this.queue = Objects.requireNonNull(queue);
+        this.maxCompensatingWorkers = poolSize;
         terminationLatch = new CountDownLatch(poolSize);
-        workerList = Collections.synchronizedList(new ArrayList<>(poolSize));
+        workerList = new CopyOnWriteArrayList<>();
         isRunning = true;
     }
 
@@ -31,6 +93,11 @@ public class SimpleFixedThreadPool implements ExecutorService {
         }
         softShutdownThreads();
         interruptThreadsByFilter(SimpleWorker::isIdle);
+        RateLimiter limiter = rateLimiter;
+        if (limiter != null) {
+            limiter.cancelHeldTasks();
+        }
+        notifyCapacityWaiters();
     }
 
     public List<Runnable> shutdownNow() {
@@ -39,7 +106,22 @@ public class SimpleFixedThreadPool implements ExecutorService {
             return restOfTasksList;
         }
         softShutdownThreads();
+        for (SimpleWorker worker : workerList) {
+            worker.drainTo(restOfTasksList);
+        }
         queue.drainTo(restOfTasksList);
+        RateLimiter limiter = rateLimiter;
+        if (limiter != null) {
+            limiter.drainTo(restOfTasksList);
+        }
+        restOfTasksList.removeIf(TenantScheduler::isDispatchTask);
+        tenantScheduler.drainTo(restOfTasksList);
+        notifyCapacityWaiters();
+        synchronized (this) {
+            if (remoteDispatcher != null) {
+                remoteDispatcher.close();
+            }
+        }
         interruptThreadsByFilter(w -> true);
         return restOfTasksList;
     }
@@ -49,134 +131,461 @@ public class SimpleFixedThreadPool implements ExecutorService {
     }
 
     public boolean isTerminated() {
-        return terminationLatch.getCount() == 0;
+        if (terminationLatch.getCount() != 0) {
+            return false;
+        }
+        synchronized (compensatingWorkersMonitor) {
+            return liveCompensatingWorkersCount == 0;
+        }
     }
 
+    /**
+     * Waits for the core workers and for the compensating workers started by {@link #managedBlock(ManagedBlocker)},
+     * including closing their {@link WorkerResource}s.
+     */
     public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
-        return terminationLatch.await(timeout, unit);
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        if (!terminationLatch.await(timeout, unit)) {
+            return false;
+        }
+        synchronized (compensatingWorkersMonitor) {
+            while (liveCompensatingWorkersCount > 0) {
+                long remainingNanos = deadline - System.nanoTime();
+                if (remainingNanos <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(compensatingWorkersMonitor, remainingNanos);
+            }
+        }
+        return true;
     }
 
     public <T> Future<T> submit(Callable<T> task) {
-        return internalSubmit(new FutureTask<>(task));
+        return internalSubmit(new SimpleFutureTask<>(task));
     }
 
     public <T> Future<T> submit(Runnable task, T result) {
-        return internalSubmit(new FutureTask<>(task, result));
+        return internalSubmit(new SimpleFutureTask<>(task, result));
     }
 
     public Future<?> submit(Runnable task) {
-        return internalSubmit(new FutureTask<>(task, true));
+        return internalSubmit(new SimpleFutureTask<>(task, true));
+    }
+
+    /**
+     * Submits a task that must start within {@code timeToDeadline}. Queued tasks with a deadline are picked
+     * earliest deadline first, ahead of tasks without one. If the deadline passes while the task is still queued,
+     * the task is not run, its Future fails with {@link TimeoutException} and the expiry is counted in {@link #getStatistics()}.
+     */
+    public <T> Future<T> submit(Callable<T> task, long timeToDeadline, TimeUnit unit) {
+        return internalSubmitWithDeadline(new SimpleFutureTask<>(task), timeToDeadline, unit);
+    }
+
+    /**
+     * Runnable flavour of {@link #submit(Callable, long, TimeUnit)}.
+     */
+    public Future<?> submit(Runnable task, long timeToDeadline, TimeUnit unit) {
+        return internalSubmitWithDeadline(new SimpleFutureTask<>(task, true), timeToDeadline, unit);
+    }
+
+    /**
+     * Registers a tenant for {@link #submitForTenant(String, Callable)}. Each tenant gets its own sub-queue;
+     * workers serve the sub-queues by weighted deficit round-robin, so a burst from one tenant cannot starve the others.
+     *
+     * @param weight         number of tasks the tenant gets per round relative to other tenants
+     * @param maxQueuedTasks capacity of the tenant sub-queue, submissions beyond it are rejected
+     */
+    public void registerTenant(String tenant, int weight, int maxQueuedTasks) {
+        tenantScheduler.registerTenant(Objects.requireNonNull(tenant), weight, maxQueuedTasks);
+    }
+
+    /**
+     * Submits a task to the sub-queue of a registered tenant.
+     *
+     * @throws RejectedExecutionException if the pool is shut down or the tenant sub-queue is full
+     * @throws IllegalArgumentException   if the tenant is not registered
+     */
+    public <T> Future<T> submitForTenant(String tenant, Callable<T> task) {
+        return internalSubmitForTenant(tenant, new SimpleFutureTask<>(task));
+    }
+
+    public Future<?> submitForTenant(String tenant, Runnable task) {
+        return internalSubmitForTenant(tenant, new SimpleFutureTask<>(task, true));
+    }
+
+    /**
+     * Runs the task graph: every node is queued as soon as all of its dependencies have completed,
+     * so workers never block waiting for other nodes.
+     *
+     * @return Future completed once all nodes are done, failing with the first node failure;
+     * cancelling it cancels the whole graph
+     * @throws IllegalStateException if the graph was already submitted
+     */
+    public Future<Void> submitGraph(TaskGraph graph) {
+        checkForRejection();
+        return graph.submit(this);
+    }
+
+    /**
+     * Connects the pool to a {@link RemoteWorkerNode}, enabling {@link #submitRemote(Callable)}.
+     * Tasks are spread over all connected nodes according to the credits the nodes grant.
+     * The node is only used after it has proven it knows the shared secret.
+     *
+     * @param sharedSecret         secret configured on the node, at least 16 bytes
+     * @param allowedClassPrefixes packages (ending with {@code '.'}) or class names of task results that may be
+     *                             deserialized besides common JDK classes
+     */
+    public synchronized void connectRemoteNode(InetSocketAddress address, byte[] sharedSecret, Collection<String> allowedClassPrefixes) throws IOException {
+        checkForRejection();
+        RemoteClassFilter classFilter = new RemoteClassFilter(allowedClassPrefixes);
+        if (remoteDispatcher == null) {
+            remoteDispatcher = new RemoteDispatcher();
+        }
+        remoteDispatcher.connect(address, sharedSecret, classFilter);
+    }
+
+    /**
+     * Submits a {@link java.io.Serializable} task for execution on one of the connected remote worker nodes.
+     * The returned Future is completed with the result or the failure sent back by the node.
+     * If the connection to the node is lost, the Future fails with {@link IOException} as the cause.
+     *
+     * @throws IllegalArgumentException if the task cannot be serialized
+     * @throws IllegalStateException    if no remote worker node was connected
+     */
+    public <T> Future<T> submitRemote(Callable<T> task) {
+        checkForRejection();
+        RemoteDispatcher dispatcher;
+        synchronized (this) {
+            dispatcher = remoteDispatcher;
+        }
+        if (dispatcher == null) {
+            throw new IllegalStateException("No remote worker node is connected");
+        }
+        return dispatcher.submit(task);
+    }
+
+    public TenantStatistics getTenantStatistics(String tenant) {
+        return tenantScheduler.getStatistics(tenant);
+    }
+
+    public Map<String, TenantStatistics> getTenantStatistics() {
+        return tenantScheduler.getStatistics();
+    }
+
+    void drainTenantTasks(String tenant, Collection<? super SimpleFutureTask<?>> tasks) {
+        tenantScheduler.drainTo(tenant, tasks);
     }
 
     public void execute(Runnable command) {
         submit(command);
     }
 
+    /**
+     * Single-flight submission: while a task for the {@code key} is queued or running,
+     * later submissions for the same key share its result and no new task is queued.
+     * Every caller gets its own Future; cancelling it detaches only that caller,
+     * the shared task is cancelled once all of its callers have cancelled.
+     * If the result cache is enabled, successful results are served from it until they expire.
+     * Callers are responsible for using each key with a single result type.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Future<T> submit(Object key, Callable<T> task) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(task);
+        checkForRejection();
+        KeyedResultCache resultCache = keyedResultCache;
+        if (resultCache != null) {
+            KeyedResultCache.CachedResult cachedResult = resultCache.get(key);
+            if (cachedResult != null) {
+                SimpleFutureTask<T> completedTask = new SimpleFutureTask<>(() -> (T) cachedResult.getValue());
+                completedTask.run();
+                return completedTask;
+            }
+        }
+        KeyedTask<T> keyedTask = new KeyedTask<>(task);
+        //attached before the task is published, so other callers cannot abandon it first
+        Future<T> callerFuture = keyedTask.attach();
+        KeyedTask<?> inFlightTask;
+        while ((inFlightTask = inFlightKeyedTasks.putIfAbsent(key, keyedTask)) != null) {
+            Future<T> sharedFuture = ((KeyedTask<T>) inFlightTask).attach();
+            if (sharedFuture != null) {
+                log.debug("Task for key {} is in flight, sharing its result", key);
+                return sharedFuture;
+            }
+            //all callers of the in-flight task have cancelled it
+            inFlightKeyedTasks.remove(key, inFlightTask);
+        }
+        SimpleFutureTask<T> futureTask = keyedTask.getTask();
+        futureTask.addCompletionListener(() -> completeKeyedTask(key, keyedTask, resultCache));
+        try {
+            internalSubmit(futureTask);
+        } catch (RejectedExecutionException e) {
+            inFlightKeyedTasks.remove(key, keyedTask);
+            //callers that attached meanwhile must not wait for a task that never runs
+            futureTask.cancel(false);
+            throw e;
+        }
+        return callerFuture;
+    }
+
+    /**
+     * Maps the {@code source} elements on the pool keeping at most {@code maxInFlight} tasks submitted at a time,
+     * so unbounded inputs are processed in constant memory. The source is consumed lazily by the returned iterator.
+     * Closing the iterator before it is exhausted cancels the tasks still in flight.
+     *
+     * @param ordered {@code true} to return results in input order, {@code false} to return them in completion order
+     */
+    public <T, R> CloseableIterator<R> parallelMap(Iterator<? extends T> source, Function<? super T, ? extends R> mapper, int maxInFlight, boolean ordered) {
+        return new ParallelMapIterator<>(this, source, mapper, maxInFlight, ordered);
+    }
+
+    /**
+     * Stream flavour of {@link #parallelMap(Iterator, Function, int, boolean)}. Closing the returned stream
+     * cancels the tasks still in flight and closes the source.
+     */
+    public <T, R> Stream<R> parallelMap(Stream<? extends T> source, Function<? super T, ? extends R> mapper, int maxInFlight, boolean ordered) {
+        CloseableIterator<R> resultIterator = parallelMap(source.iterator(), mapper, maxInFlight, ordered);
+        int characteristics = ordered ? Spliterator.ORDERED : 0;
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(resultIterator, characteristics), false)
+                .onClose(resultIterator::close)
+                .onClose(source::close);
+    }
+
+    /**
+     * Enables caching of results of keyed submissions, see {@link #submit(Object, Callable)}.
+     */
+    public void enableResultCache(int maxSize, long timeToLive, TimeUnit unit) {
+        keyedResultCache = new KeyedResultCache(maxSize, timeToLive, unit);
+    }
+
+    /**
+     * Sets the hard cap on temporary workers started while pool workers are blocked in {@link #managedBlock(ManagedBlocker)}.
+     * Defaults to the pool size; 0 disables compensation.
+     */
+    public void setMaxCompensatingWorkers(int maxCompensatingWorkers) {
+        if (maxCompensatingWorkers < 0) {
+            throw new IllegalArgumentException("Argument maxCompensatingWorkers cannot be less than zero: " + maxCompensatingWorkers);
+        }
+        this.maxCompensatingWorkers = maxCompensatingWorkers;
+    }
+
+    /**
+     * Runs a blocking section of a task. When called from a worker of a {@link SimpleFixedThreadPool}, the pool temporarily
+     * starts a compensating worker (up to {@link #setMaxCompensatingWorkers(int)}) so the queue keeps being served
+     * while the current worker is blocked. The compensating worker retires once the blocked section is over.
+     * Outside of a pool worker the blocker is simply run.
+     */
+    public static void managedBlock(ManagedBlocker blocker) throws InterruptedException {
+        SimpleFixedThreadPool pool = CURRENT_POOL.get();
+        if (pool == null) {
+            runBlocker(blocker);
+            return;
+        }
+        pool.beforeBlocking();
+        try {
+            runBlocker(blocker);
+        } finally {
+            pool.blockedWorkersCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * Limits the rate at which tasks are released to the workers with a token bucket.
+     * Up to {@code burst} tasks are released at once, after that {@code permitsPerSecond}.
+     * Workers only take released tasks, so they are never occupied by a task waiting for the limit.
+     *
+     * @param mode what a submission does when no token is available
+     * @throws IllegalStateException if the rate limit is already enabled
+     */
+    public synchronized void enableRateLimit(double permitsPerSecond, int burst, RateLimitMode mode) {
+        checkForRejection();
+        if (rateLimiter != null) {
+            throw new IllegalStateException("Rate limit is already enabled");
+        }
+        rateLimiter = new RateLimiter(permitsPerSecond, burst, Objects.requireNonNull(mode), this::putToQueue, this::offerToQueue, DEADLINE_ORDER);
+    }
+
+    /**
+     * Number of tasks waiting for a rate limit token in {@link RateLimitMode#QUEUE} mode.
+     * These tasks are not counted in {@link PoolStatistics#getQueuedTaskCount()}.
+     */
+    public int getRateLimitedTaskCount() {
+        RateLimiter limiter = rateLimiter;
+        return limiter == null ? 0 : limiter.getHeldTaskCount();
+    }
+
+    /**
+     * Pins the worker threads to the CPUs of the placement when they start. Workers are started on demand,
+     * so the placement must be set before the first task is submitted.
+     * Pinning is a no-op where {@link WorkerPlacement#isSupported()} is {@code false}.
+     *
+     * @throws IllegalStateException if workers are already started
+     */
+    public synchronized void setWorkerPlacement(WorkerPlacement placement) {
+        checkForRejection();
+        if (workersCount.get() > 0) {
+            throw new IllegalStateException("Worker placement must be set before workers are started");
+        }
+        workerPlacement = Objects.requireNonNull(placement);
+    }
+
+    /**
+     * Starts recording lock contention and wait times of the task queue, reported by {@link PoolStatistics#getQueueStatistics()}.
+     *
+     * @throws IllegalStateException if the pool was created with a queue other than {@link SimpleLinkedBlockingQueue}
+     */
+    public void enableQueueStatistics() {
+        if (!(queue instanceof SimpleLinkedBlockingQueue)) {
+            throw new IllegalStateException("Queue statistics require SimpleLinkedBlockingQueue: " + queue.getClass().getName());
+        }
+        ((SimpleLinkedBlockingQueue<Runnable>) queue).enableStatistics();
+    }
+
+    /**
+     * @return the pool the current thread is a worker of, or {@code null}
+     */
+    static SimpleFixedThreadPool currentPool() {
+        return CURRENT_POOL.get();
+    }
+
+    /**
+     * @return number of queued tasks, read without taking the queue lock, so possibly stale
+     */
+    int getApproximateQueuedTaskCount() {
+        return queue instanceof SimpleLinkedBlockingQueue ? ((SimpleLinkedBlockingQueue<Runnable>) queue).getApproximateSize() : queue.size();
+    }
+
+    public PoolStatistics getStatistics() {
+        int queuedTaskCount = queue.size();
+        long queuedTaskWeight = queuedTaskCount;
+        QueueStatistics queueStatistics = QueueStatistics.EMPTY;
+        if (queue instanceof SimpleLinkedBlockingQueue) {
+            queuedTaskWeight = ((SimpleLinkedBlockingQueue<Runnable>) queue).getTotalWeight();
+            queueStatistics = ((SimpleLinkedBlockingQueue<Runnable>) queue).getStatistics();
+        }
+        return new PoolStatistics(poolSize, workersCount.get(), queuedTaskCount, queuedTaskWeight, expiredTaskCount.sum(),
+                blockedWorkersCount.get(), compensatingWorkersCount.get(), handedOffTaskCount.sum(), queueStatistics);
+    }
+
     public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks) throws InterruptedException {
-        CountDownLatch timedLatch = new CountDownLatch(tasks.size());
-        List<Semaphore> semaphoreList = new ArrayList<>();
-        List<Future<T>> futureList = invokeAllAsync(tasks, timedLatch, semaphoreList);
-        timedLatch.await();
-        for (int i = 0; i < semaphoreList.size(); i++) {
-            if (semaphoreList.get(i).tryAcquire()) {
-                try {
-                    T result = futureList.get(i).get();
-                } catch (ExecutionException e) {
-                    e.printStackTrace();
-                }
+        SimpleCompletionService<T> completionService = newCompletionService();
+        List<Future<T>> futureList = submitAll(completionService, tasks);
+        try {
+            for (int i = 0; i < futureList.size(); i++) {
+                completionService.take();
             }
+        } catch (InterruptedException e) {
+            cancelAll(futureList);
+            throw e;
         }
         return futureList;
     }
 
     public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit) throws InterruptedException {
-        final CountDownLatch timedLatch = new CountDownLatch(tasks.size());
-        List<Semaphore> semaphoreList = new ArrayList<>();
-        List<Future<T>> futureList = invokeAllAsync(tasks, timedLatch, semaphoreList);
-        timedLatch.await(timeout, unit);
-        for (int i = 0; i < semaphoreList.size(); i++) {
-            if (!semaphoreList.get(i).tryAcquire()) {
-                futureList.get(i).cancel(true);
-            } else{
-                try {
-                    T result = futureList.get(i).get();
-                } catch (ExecutionException e) {
-                    e.printStackTrace();
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        SimpleCompletionService<T> completionService = newCompletionService();
+        List<Future<T>> futureList = submitAll(completionService, tasks);
+        try {
+            for (int i = 0; i < futureList.size(); i++) {
+                if (completionService.poll(remainingNanos(deadline), TimeUnit.NANOSECONDS) == null) {
+                    log.debug("Timeout is over, {} tasks are not completed", futureList.size() - i);
+                    cancelAll(futureList);
+                    break;
                 }
             }
+        } catch (InterruptedException e) {
+            cancelAll(futureList);
+            throw e;
         }
         return futureList;
     }
 
     public <T> T invokeAny(Collection<? extends Callable<T>> tasks) throws InterruptedException, ExecutionException {
-        AnyResultHolder<T> resultHolder = new AnyResultHolder<>();
-        List<Future<T>> futureList = invokeAnyAsync(tasks, resultHolder);
-        T someResult = resultHolder.getResult();
         try {
-            CheckAndCompleteFuture(futureList, false, resultHolder.isResultSet());
+            return doInvokeAny(tasks, false, 0);
         } catch (TimeoutException e) {
-            //should not happen if throwTimePutException == false
+            //should not happen for untimed invocation
+            throw new ExecutionException(e);
         }
-        return someResult;
     }
 
     public <T> T invokeAny(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
-        AnyResultHolder<T> resultHolder = new AnyResultHolder<>();
-        List<Future<T>> futureList = invokeAnyAsync(tasks, resultHolder);
-        T someResult = resultHolder.getResult(timeout, unit);
-        log.debug("Result is taken: {}", someResult);
-        CheckAndCompleteFuture(futureList, true, resultHolder.isResultSet());
-        return someResult;
+        return doInvokeAny(tasks, true, System.nanoTime() + unit.toNanos(timeout));
     }
 
-    private <T> void CheckAndCompleteFuture(List<Future<T>> futureList, boolean throwTimeOutException, boolean isResultSet) throws TimeoutException, ExecutionException {
-        int successfullyCompletedTaskNumber, failedTaskNumber, inProgressTaskNumber;
-        successfullyCompletedTaskNumber = failedTaskNumber = inProgressTaskNumber = 0;
-        for (Future<T> future : futureList) {
-            if (future.isDone()) {
-                if (!future.isCancelled()) {
-                    try {
-                        T taskResult = future.get();
-                        successfullyCompletedTaskNumber++;
-                    } catch (Exception e) {
-                        failedTaskNumber++;
-                    }
+    /**
+     * Creates a completion service that hands out futures of tasks submitted through it in the order the tasks finish.
+     */
+    public <T> SimpleCompletionService<T> newCompletionService() {
+        return new SimpleCompletionService<>(this);
+    }
+
+    private <T> T doInvokeAny(Collection<? extends Callable<T>> tasks, boolean isTimed, long deadline) throws InterruptedException, ExecutionException, TimeoutException {
+        if (tasks.isEmpty()) {
+            throw new IllegalArgumentException("No tasks to invoke");
+        }
+        SimpleCompletionService<T> completionService = newCompletionService();
+        List<Future<T>> futureList = submitAll(completionService, tasks);
+        int failedTaskNumber = 0;
+        ExecutionException lastException = null;
+        try {
+            for (int i = 0; i < futureList.size(); i++) {
+                Future<T> completedFuture = isTimed
+                        ? completionService.poll(remainingNanos(deadline), TimeUnit.NANOSECONDS)
+                        : completionService.take();
+                if (completedFuture == null) {
+                    throw new TimeoutException("No task successfully completed, but timeout is over. Failed: " + failedTaskNumber);
+                }
+                try {
+                    T result = completedFuture.get();
+                    log.debug("Result is taken: {}", result);
+                    return result;
+                } catch (ExecutionException e) {
+                    failedTaskNumber++;
+                    lastException = e;
                 }
-            } else {
-                future.cancel(true);
-                inProgressTaskNumber++;
             }
+        } finally {
+            cancelAll(futureList);
         }
-        if (inProgressTaskNumber == futureList.size() && throwTimeOutException && !isResultSet) {
-            throw new TimeoutException("All tasks are still in progress, but timeout is over");
-        }
-        if (successfullyCompletedTaskNumber == 0 && !isResultSet) {
-            throw new ExecutionException("No task successfully completed, failed: " + failedTaskNumber + ", in progress: " + inProgressTaskNumber, null);
-        }
+        throw new ExecutionException("No task successfully completed, failed: " + failedTaskNumber,
+                lastException == null ? null : lastException.getCause());
     }
 
-    private <T> List<Future<T>> invokeAllAsync(Collection<? extends Callable<T>> tasks, final CountDownLatch timedLatch, List<Semaphore> semaphoreList) throws InterruptedException {
-        List<Future<T>> futureList = new ArrayList<>();
-        for (Callable<T> task : tasks) {
-            Semaphore semaphore = new Semaphore(1);
-            semaphoreList.add(semaphore);
-            semaphore.acquire();
-            TimedCallableTaskWrapper<T> taskWrapper = new TimedCallableTaskWrapper<>(task, result -> {
-                semaphore.release();
-                timedLatch.countDown();
-            });
-            futureList.add(submit(taskWrapper));
+    private <T> List<Future<T>> submitAll(SimpleCompletionService<T> completionService, Collection<? extends Callable<T>> tasks) {
+        List<Future<T>> futureList = new ArrayList<>(tasks.size());
+        try {
+            for (Callable<T> task : tasks) {
+                futureList.add(completionService.submit(task));
+            }
+        } catch (RejectedExecutionException e) {
+            cancelAll(futureList);
+            throw e;
         }
         return futureList;
     }
 
-    private <T> List<Future<T>> invokeAnyAsync(Collection<? extends Callable<T>> tasks, AnyResultHolder<T> resultHolder) {
-        List<Future<T>> futureList = new ArrayList<>();
-        for (Callable<T> task : tasks) {
-            TimedCallableTaskWrapper<T> taskWrapper = new TimedCallableTaskWrapper<>(task, result -> resultHolder.setResult(result));
-            futureList.add(submit(taskWrapper));
+    private <T> void cancelAll(List<Future<T>> futureList) {
+        for (Future<T> future : futureList) {
+            future.cancel(true);
         }
-        return futureList;
+    }
+
+    private long remainingNanos(long deadline) {
+        return Math.max(0, deadline - System.nanoTime());
+    }
+
+    private void completeKeyedTask(Object key, KeyedTask<?> keyedTask, KeyedResultCache resultCache) {
+        //result must be cached before the in-flight entry is removed, otherwise a concurrent submit can run the task again
+        SimpleFutureTask<?> futureTask = keyedTask.getTask();
+        if (resultCache != null && !futureTask.isCancelled()) {
+            try {
+                resultCache.put(key, futureTask.get());
+            } catch (ExecutionException | InterruptedException e) {
+                log.debug("Result for key {} is not cached", key, e);
+            }
+        }
+        inFlightKeyedTasks.remove(key, keyedTask);
     }
 
     private void checkForRejection() {
@@ -201,6 +610,14 @@ public class SimpleFixedThreadPool implements ExecutorService {
         for (SimpleWorker simpleWorker : workerList) {
             simpleWorker.shutdown();
         }
+        synchronized (this) {
+            if (remoteDispatcher != null) {
+                remoteDispatcher.shutdown();
+            }
+            if (rateLimiter != null) {
+                rateLimiter.close();
+            }
+        }
     }
 
     private void startNewWorkerIfNeeded() {
@@ -208,25 +625,280 @@ public class SimpleFixedThreadPool implements ExecutorService {
         int currentWorkersCount;
         while (!workerSuccessfullyAddedFlag && (currentWorkersCount = workersCount.get()) < poolSize) {
             int currentIndex = currentWorkersCount - 1;
-            SimpleWorker worker = new SimpleWorker(queue, "Executor#" + currentIndex, terminationLatch);
+            SimpleWorker worker = new SimpleWorker(queue, "Executor#" + currentIndex, terminationLatch, idleWorkers);
+            worker.setTaskTakenListener(capacityWaitersNotifier);
             //Critical point: if 2 or more competitors are to add new worker  - only one will win, second will go on second round
             //in case of second round the work done above is overhead;
             if (workersCount.compareAndSet(currentWorkersCount, (currentWorkersCount + 1))) {
                 workerSuccessfullyAddedFlag = true;
-                workerList.add(worker);
-                Thread workerThread = new Thread(worker);
-                workerThread.setName("Worker " + currentIndex + " thread");
-                workerThread.start();
+                startWorkerThread(worker, "Worker " + currentIndex + " thread", currentWorkersCount);
                 log.debug("New Worker {} added", currentIndex);
             }
         }
     }
 
-    private <T> Future<T> internalSubmit(FutureTask<T> futureTask) {
+    private void beforeBlocking() {
+        int blockedCount = blockedWorkersCount.incrementAndGet();
+        int currentCompensatingCount;
+        while (isRunning && (currentCompensatingCount = compensatingWorkersCount.get()) < Math.min(blockedCount, maxCompensatingWorkers)) {
+            if (compensatingWorkersCount.compareAndSet(currentCompensatingCount, currentCompensatingCount + 1)) {
+                SimpleWorker worker = new SimpleWorker(queue, "Compensating executor#" + currentCompensatingCount, null, this::retireCompensatingWorker);
+                worker.setTaskTakenListener(capacityWaitersNotifier);
+                //counted by the blocking worker, so the pool cannot look terminated before the new worker starts
+                synchronized (compensatingWorkersMonitor) {
+                    liveCompensatingWorkersCount++;
+                }
+                startWorkerThread(worker, "Compensating worker " + currentCompensatingCount + " thread", -1);
+                log.debug("Compensating Worker {} added, blocked workers: {}", currentCompensatingCount, blockedCount);
+                return;
+            }
+        }
+    }
+
+    private boolean retireCompensatingWorker() {
+        int currentCompensatingCount;
+        while ((currentCompensatingCount = compensatingWorkersCount.get()) > blockedWorkersCount.get()) {
+            if (compensatingWorkersCount.compareAndSet(currentCompensatingCount, currentCompensatingCount - 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Weighs the task the caller submitted rather than the pool's wrapper around it.
+     * A tenant dispatch ticket weighs as much as the tenant task it was queued for.
+     */
+    private static ToLongFunction<Runnable> weighQueuedTask(ToLongFunction<Object> taskWeigher) {
+        Objects.requireNonNull(taskWeigher);
+        return queuedTask -> {
+            Runnable task = TenantScheduler.getSubmittedTask(queuedTask);
+            return taskWeigher.applyAsLong(task instanceof SimpleFutureTask ? ((SimpleFutureTask<?>) task).getTask() : task);
+        };
+    }
+
+    /**
+     * @param placementIndex index of a core worker in the {@link WorkerPlacement}, negative for a compensating worker
+     */
+    private void startWorkerThread(SimpleWorker worker, String threadName, int placementIndex) {
+        Thread workerThread = new Thread(() -> {
+            CURRENT_POOL.set(this);
+            try {
+                WorkerPlacement placement = workerPlacement;
+                if (placement != null && !placement.pinCurrentThread(placementIndex)) {
+                    log.debug("{} is not pinned to CPUs {}", threadName, Arrays.toString(placement.getWorkerCpus(placementIndex)));
+                }
+                //published only once pinned, so shutdownNow cannot interrupt pinning; a shutdown it missed is applied here
+                workerList.add(worker);
+                if (!isRunning) {
+                    worker.shutdown();
+                }
+                worker.run();
+            } finally {
+                CURRENT_POOL.remove();
+                workerList.remove(worker);
+                if (placementIndex < 0) {
+                    compensatingWorkerStopped();
+                }
+            }
+        });
+        workerThread.setName(threadName);
+        worker.setWorkerThread(workerThread);
+        workerThread.start();
+    }
+
+    private void compensatingWorkerStopped() {
+        synchronized (compensatingWorkersMonitor) {
+            if (--liveCompensatingWorkersCount == 0) {
+                compensatingWorkersMonitor.notifyAll();
+            }
+        }
+    }
+
+    private static void runBlocker(ManagedBlocker blocker) throws InterruptedException {
+        while (!blocker.isReleasable()) {
+            if (blocker.block()) {
+                return;
+            }
+        }
+    }
+
+    private <T> Future<T> internalSubmitWithDeadline(SimpleFutureTask<T> futureTask, long timeToDeadline, TimeUnit unit) {
+        futureTask.setDeadline(System.nanoTime() + unit.toNanos(timeToDeadline), expiredTaskCounter);
+        return internalSubmit(futureTask);
+    }
+
+    <T> Future<T> internalSubmitForTenant(String tenant, SimpleFutureTask<T> futureTask) {
         checkForRejection();
+        FutureTask<Void> dispatchTicket = tenantScheduler.enqueue(tenant, futureTask);
         startNewWorkerIfNeeded();
-        queue.put(futureTask);
+        try {
+            enqueue(dispatchTicket);
+        } catch (RejectedExecutionException e) {
+            SimpleLinkedBlockingQueue.removeFromQueue(futureTask);
+            tenantScheduler.discardTicket(futureTask);
+            throw e;
+        }
+        return futureTask;
+    }
+
+    <T> SimpleFutureTask<T> internalSubmit(SimpleFutureTask<T> futureTask) {
+        checkForRejection();
+        startNewWorkerIfNeeded();
+        enqueue(futureTask);
         return futureTask;
     }
 
+    /**
+     * Same as {@link #internalSubmit(SimpleFutureTask)} but never blocks the caller waiting for queue capacity
+     * or for a rate limit token.
+     *
+     * @return false if the queue is full, see {@link #whenQueueCapacityFreed(Runnable)}
+     */
+    boolean tryInternalSubmit(SimpleFutureTask<?> futureTask) {
+        checkForRejection();
+        startNewWorkerIfNeeded();
+        RateLimiter limiter = rateLimiter;
+        return limiter == null ? offerToQueue(futureTask) : limiter.trySubmit(futureTask);
+    }
+
+    /**
+     * Registers an action run once, after a worker has taken a task and so possibly freed queue capacity,
+     * or on shutdown. The action runs on the worker thread and must not block.
+     */
+    void whenQueueCapacityFreed(Runnable action) {
+        capacityWaiters.add(action);
+    }
+
+    private void notifyCapacityWaiters() {
+        if (capacityWaiters.isEmpty()) {
+            return;
+        }
+        //waiters registering again while being notified wait for the next task taken
+        List<Runnable> waiters = new ArrayList<>();
+        Runnable waiter;
+        while ((waiter = capacityWaiters.poll()) != null) {
+            waiters.add(waiter);
+        }
+        for (Runnable action : waiters) {
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                log.warn("Queue capacity waiter failed", e);
+            }
+        }
+    }
+
+    private void enqueue(FutureTask<?> task) {
+        RateLimiter limiter = rateLimiter;
+        if (limiter == null) {
+            putToQueue(task);
+        } else {
+            limiter.submit(task);
+        }
+    }
+
+    /**
+     * Hands the task directly to an idle worker, the queue is only used when all workers are busy.
+     *
+     * @throws RejectedExecutionException if the caller is interrupted while waiting for queue capacity
+     */
+    private void putToQueue(FutureTask<?> task) {
+        if (handOffToIdleWorker(task)) {
+            return;
+        }
+        try {
+            queue.put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for queue capacity", e);
+        }
+        wakeUpIdleWorker();
+    }
+
+    /**
+     * Non-blocking {@link #putToQueue(FutureTask)}.
+     *
+     * @return false if the queue is full
+     */
+    private boolean offerToQueue(FutureTask<?> task) {
+        if (handOffToIdleWorker(task)) {
+            return true;
+        }
+        if (!queue.offer(task)) {
+            return false;
+        }
+        wakeUpIdleWorker();
+        return true;
+    }
+
+    private boolean handOffToIdleWorker(FutureTask<?> task) {
+        SimpleWorker idleWorker;
+        while ((idleWorker = idleWorkers.poll()) != null) {
+            if (idleWorker.handOff(task)) {
+                handedOffTaskCount.increment();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A worker that went idle while the task was being queued must not miss it.
+     */
+    private void wakeUpIdleWorker() {
+        SimpleWorker idleWorker;
+        while ((idleWorker = idleWorkers.poll()) != null) {
+            if (idleWorker.wakeUp()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Iterator returned by {@link #parallelMap(Iterator, Function, int, boolean)}.
+     */
+    public interface CloseableIterator<E> extends Iterator<E>, AutoCloseable {
+        @Override
+        void close();
+    }
+
+    /**
+     * What a submission does when the rate limit enabled by {@link #enableRateLimit(double, int, RateLimitMode)}
+     * has no token available.
+     */
+    public enum RateLimitMode {
+        /**
+         * The task is accepted and held until a token is available.
+         */
+        QUEUE,
+        /**
+         * The submitting thread blocks until a token is available.
+         */
+        BLOCK,
+        /**
+         * The task is rejected with {@link RejectedExecutionException}.
+         */
+        REJECT
+    }
+
+    /**
+     * Blocking section of a task run through {@link #managedBlock(ManagedBlocker)}, same contract as
+     * {@link ForkJoinPool.ManagedBlocker}.
+     */
+    public interface ManagedBlocker {
+
+        /**
+         * Possibly blocks the current thread.
+         *
+         * @return {@code true} if no additional blocking is necessary
+         */
+        boolean block() throws InterruptedException;
+
+        /**
+         * @return {@code true} if blocking is unnecessary
+         */
+        boolean isReleasable();
+    }
+
 }
@@ -0,0 +1,156 @@
+package edu.ted.executorservice;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * FutureTask used by {@link SimpleFixedThreadPool} for every submitted task.
+ * Keeps a reference to the original task so pool policies (weighing, etc.) can inspect it,
+ * and lets the pool react to completion without blocking on {@link #get()}.
+ * A cancelled task is unlinked from the queue it is waiting in, so it takes no queue space.
+ * A task with a deadline that is reached before the task starts is completed with
+ * {@link TimeoutException} without running.
+ */
+@Slf4j
+public class SimpleFutureTask<T> extends FutureTask<T> implements SimpleLinkedBlockingQueue.NodeAware {
+
+    private final Object task;
+    private List<Runnable> completionListeners;
+    private boolean isCompleted;
+    private volatile Object queueNode;
+    private boolean hasDeadline;
+    private long deadline;
+    private Runnable expiryAction;
+    private volatile boolean isExpired;
+    private long queuedAt;
+
+    public SimpleFutureTask(Callable<T> callable) {
+        super(callable);
+        this.task = callable;
+    }
+
+    public SimpleFutureTask(Runnable runnable, T result) {
+        super(runnable, result);
+        this.task = runnable;
+    }
+
+    /**
+     * @param task the work the caller submitted, when the pool wraps it into an internal callable
+     */
+    SimpleFutureTask(Callable<T> callable, Object task) {
+        super(callable);
+        this.task = task;
+    }
+
+    /**
+     * @return the task the caller submitted: a {@link Callable}, a {@link Runnable}
+     * or the source element of a {@link SimpleFixedThreadPool#parallelMap} mapping
+     */
+    public Object getTask() {
+        return task;
+    }
+
+    /**
+     * @param deadline     {@link System#nanoTime()} based point in time the task must start before
+     * @param expiryAction run before the task is completed exceptionally because of the passed deadline
+     */
+    void setDeadline(long deadline, Runnable expiryAction) {
+        this.deadline = deadline;
+        this.expiryAction = expiryAction;
+        this.hasDeadline = true;
+    }
+
+    boolean hasDeadline() {
+        return hasDeadline;
+    }
+
+    long getDeadline() {
+        return deadline;
+    }
+
+    void setQueuedAt(long queuedAt) {
+        this.queuedAt = queuedAt;
+    }
+
+    long getQueuedAt() {
+        return queuedAt;
+    }
+
+    /**
+     * @return {@code true} if the task was completed exceptionally because its deadline passed before it started
+     */
+    public boolean isExpired() {
+        return isExpired && !isCancelled();
+    }
+
+    @Override
+    public void run() {
+        if (hasDeadline && !isDone() && System.nanoTime() - deadline >= 0) {
+            isExpired = true;
+            if (expiryAction != null) {
+                expiryAction.run();
+            }
+            setException(new TimeoutException("Deadline passed before the task was started"));
+            return;
+        }
+        super.run();
+    }
+
+    /**
+     * Registers an action to be run once the task is completed, failed or cancelled.
+     * The action runs in the completing thread, or immediately if the task is already done.
+     */
+    public void addCompletionListener(Runnable listener) {
+        synchronized (this) {
+            if (!isCompleted) {
+                if (completionListeners == null) {
+                    completionListeners = new ArrayList<>(2);
+                }
+                completionListeners.add(listener);
+                return;
+            }
+        }
+        runListener(listener);
+    }
+
+    @Override
+    public Object getQueueNode() {
+        return queueNode;
+    }
+
+    @Override
+    public void setQueueNode(Object queueNode) {
+        this.queueNode = queueNode;
+    }
+
+    @Override
+    protected void done() {
+        if (isCancelled() && SimpleLinkedBlockingQueue.removeFromQueue(this)) {
+            log.debug("Cancelled task is removed from the queue");
+        }
+        List<Runnable> listeners;
+        synchronized (this) {
+            isCompleted = true;
+            listeners = completionListeners;
+            completionListeners = null;
+        }
+        if (listeners != null) {
+            for (Runnable listener : listeners) {
+                runListener(listener);
+            }
+        }
+    }
+
+    private void runListener(Runnable listener) {
+        try {
+            listener.run();
+        } catch (RuntimeException e) {
+            log.debug("Completion listener failed", e);
+        }
+    }
+}
@@ -2,32 +2,82 @@ package edu.ted.executorservice;
 
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.Collection;
-import java.util.Date;
-import java.util.Objects;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToLongFunction;
 
+/**
+ * Optionally bounded {@link BlockingQueue} guarded by a single fair lock. Besides the element count
+ * it can be bounded by the total element weight, and it can keep elements in comparator order.
+ * Its iterator works on a snapshot of the queue taken under the lock.
+ */
 @Slf4j
-public class SimpleLinkedBlockingQueue<T> {
+public class SimpleLinkedBlockingQueue<T> extends AbstractQueue<T> implements BlockingQueue<T> {
 
     private final int capacity;
+    private final long weightCapacity;
+    private final ToLongFunction<? super T> weigher;
+    private final Comparator<? super T> comparator;
     private Node<T> tail;
     private Node<T> head;
-    private int size;
+    //written under the lock, volatile only for getApproximateSize()
+    private volatile int size;
+    private long totalWeight;
     private final ReentrantLock lock = new ReentrantLock(true);
     private final Condition readCondition = lock.newCondition();
     private final Condition writeCondition = lock.newCondition();
+    private volatile ContentionRecorder contentionRecorder;
 
     public SimpleLinkedBlockingQueue() {
         this(Integer.MAX_VALUE);
     }
 
     public SimpleLinkedBlockingQueue(int capacity) {
+        this(capacity, Long.MAX_VALUE, t -> 1);
+    }
+
+    public SimpleLinkedBlockingQueue(long weightCapacity, ToLongFunction<? super T> weigher) {
+        this(Integer.MAX_VALUE, weightCapacity, weigher);
+    }
+
+    /**
+     * Creates a queue bounded both by element count and by total element weight.
+     * An element heavier than {@code weightCapacity} is still accepted into an empty queue,
+     * otherwise it could never be enqueued at all.
+     *
+     * @param capacity       maximum number of elements
+     * @param weightCapacity maximum sum of element weights
+     * @param weigher        reports the weight (cost) of a single element, must not be negative
+     */
+    public SimpleLinkedBlockingQueue(int capacity, long weightCapacity, ToLongFunction<? super T> weigher) {
+        this(capacity, weightCapacity, weigher, null);
+    }
+
+    /**
+     * Creates a bounded queue that keeps elements sorted by the {@code comparator} instead of FIFO order.
+     * Equal elements stay in insertion order. An element is inserted by scanning back from the tail,
+     * so appending an element that is not less than the tail is O(1). Adjacent equal elements form a run
+     * that the scan skips in one step, so the insert costs one comparison per distinct greater element:
+     * a comparator that only orders some elements, e.g. deadline tasks ahead of FIFO tasks, never scans the FIFO tail.
+     *
+     * @param comparator element order, {@code null} for FIFO order
+     */
+    public SimpleLinkedBlockingQueue(int capacity, long weightCapacity, ToLongFunction<? super T> weigher, Comparator<? super T> comparator) {
+        if (capacity <= 0 || weightCapacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity + ", " + weightCapacity);
+        }
         this.capacity = capacity;
+        this.weightCapacity = weightCapacity;
+        this.weigher = Objects.requireNonNull(weigher);
+        this.comparator = comparator;
     }
 
+    @Override
     public boolean add(T t) {
         boolean result = offer(t);
         if (!result) {
@@ -36,60 +86,70 @@ public class SimpleLinkedBlockingQueue<T> {
         return result;
     }
 
+    @Override
     public boolean offer(T t) {
         checkIfNull(t);
-        lock.lock();
+        long weight = weigh(t);
+        acquireLock();
         try {
-            if (size == capacity) {
+            if (isFull(weight)) {
                 return false;
             }
-            addElement(t);
+            addElement(t, weight);
         } finally {
             lock.unlock();
         }
         return true;
     }
 
-    public void put(T t) {
+    @Override
+    public void put(T t) throws InterruptedException {
         checkIfNull(t);
-        lock.lock();
+        long weight = weigh(t);
+        acquireLock();
         try {
-            while (size == capacity) {
+            while (isFull(weight)) {
+                long waitStart = startWait();
                 writeCondition.await();
+                recordProducerWait(waitStart);
             }
-            addElement(t);
-        } catch (InterruptedException e) {
-            log.debug("Method put() was interrupted", e);
+            addElement(t, weight);
         } finally {
             lock.unlock();
         }
     }
 
+    @Override
     public boolean offer(T t, long timeout, TimeUnit unit) throws InterruptedException {
+        checkIfNull(t);
         checkTimeout(timeout);
-        long waitTime = unit.toMillis(timeout);
-        lock.lock();
+        long weight = weigh(t);
+        long remainingNanos = unit.toNanos(timeout);
+        acquireLock();
         try {
-            long time = System.currentTimeMillis();
-            Date deadLine = new Date(time + waitTime);
-            while (size == capacity && System.currentTimeMillis() < deadLine.getTime()) {
-                writeCondition.awaitUntil(deadLine);
-            }
-            if (size == capacity) {
-                return false;
+            while (isFull(weight)) {
+                if (remainingNanos <= 0) {
+                    return false;
+                }
+                long waitStart = startWait();
+                remainingNanos = writeCondition.awaitNanos(remainingNanos);
+                recordProducerWait(waitStart);
             }
-            addElement(t);
+            addElement(t, weight);
             return true;
         } finally {
             lock.unlock();
         }
     }
 
+    @Override
     public T take() throws InterruptedException {
-        lock.lock();
+        acquireLock();
         try {
             while (size == 0) {
+                long waitStart = startWait();
                 readCondition.await();
+                recordConsumerWait(waitStart);
             }
             return getElement();
         } finally {
@@ -97,16 +157,10 @@ public class SimpleLinkedBlockingQueue<T> {
         }
     }
 
-    public T poll(long timeout, TimeUnit unit) throws InterruptedException {
-        checkTimeout(timeout);
-        long waitTime = unit.toMillis(timeout);
-        lock.lock();
+    @Override
+    public T poll() {
+        acquireLock();
         try {
-            long time = System.currentTimeMillis();
-            Date deadLine = new Date(time + waitTime);
-            while (head == tail && System.currentTimeMillis() < deadLine.getTime()) {
-                readCondition.awaitUntil(deadLine);
-            }
             if (size == 0) {
                 return null;
             }
@@ -116,8 +170,39 @@ public class SimpleLinkedBlockingQueue<T> {
         }
     }
 
+    @Override
+    public T peek() {
+        acquireLock();
+        try {
+            return size == 0 ? null : head.value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public T poll(long timeout, TimeUnit unit) throws InterruptedException {
+        checkTimeout(timeout);
+        long remainingNanos = unit.toNanos(timeout);
+        acquireLock();
+        try {
+            while (size == 0) {
+                if (remainingNanos <= 0) {
+                    return null;
+                }
+                long waitStart = startWait();
+                remainingNanos = readCondition.awaitNanos(remainingNanos);
+                recordConsumerWait(waitStart);
+            }
+            return getElement();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
     public int remainingCapacity() {
-        lock.lock();
+        acquireLock();
         try {
             return capacity - size;
         } finally {
@@ -125,30 +210,181 @@ public class SimpleLinkedBlockingQueue<T> {
         }
     }
 
-    public int drainTo(Collection<? super T> c) {
-        lock.lock();
+    /**
+     * Removes a single instance of the element from the queue.
+     * Runs in O(1) for {@link NodeAware} elements and in O(n) otherwise.
+     *
+     * @return {@code true} if the queue contained the element
+     */
+    @Override
+    public boolean remove(Object o) {
+        if (o == null) {
+            return false;
+        }
+        acquireLock();
         try {
-            for (int i = 0; i < size; i++) {
-                c.add(getElement());
+            Node<T> node = findNode(o);
+            if (node == null) {
+                return false;
             }
+            unlink(node);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (o == null) {
+            return false;
+        }
+        acquireLock();
+        try {
+            return findNode(o) != null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        acquireLock();
+        try {
+            return size;
         } finally {
             lock.unlock();
         }
-        return c.size();
     }
 
+    /**
+     * @return element count read without taking the lock, it may be stale by the time it is used
+     */
+    public int getApproximateSize() {
+        return size;
+    }
+
+    public long getTotalWeight() {
+        acquireLock();
+        try {
+            return totalWeight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getWeightCapacity() {
+        return weightCapacity;
+    }
+
+    /**
+     * Starts recording lock acquire latency, contended acquires, producer and consumer waits and signals.
+     * The counters are striped, so recording does not add contention of its own.
+     */
+    public synchronized void enableStatistics() {
+        if (contentionRecorder == null) {
+            contentionRecorder = new ContentionRecorder();
+        }
+    }
+
+    public QueueStatistics getStatistics() {
+        ContentionRecorder recorder = contentionRecorder;
+        return recorder == null ? QueueStatistics.EMPTY : recorder.snapshot();
+    }
+
+    @Override
+    public void clear() {
+        drainTo(new ArrayList<>());
+    }
+
+    /**
+     * Returns an iterator over a snapshot of the elements in head-to-tail order.
+     * It does not reflect later changes; {@link Iterator#remove()} removes the element from the queue.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new SnapshotIterator(toList());
+    }
+
+    @Override
+    public Object[] toArray() {
+        return toList().toArray();
+    }
+
+    @Override
+    public <E> E[] toArray(E[] a) {
+        return toList().toArray(a);
+    }
+
+    @Override
+    public int drainTo(Collection<? super T> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
     public int drainTo(Collection<? super T> c, int maxElements) {
-        lock.lock();
+        checkIfNull(c);
+        if (c == this) {
+            throw new IllegalArgumentException("Queue cannot be drained to itself");
+        }
+        int drainedCount = 0;
+        acquireLock();
         try {
-            for (int i = 0; i < Math.min(size, maxElements); i++) {
+            while (size > 0 && drainedCount < maxElements) {
                 c.add(getElement());
+                drainedCount++;
+            }
+        } finally {
+            lock.unlock();
+        }
+        return drainedCount;
+    }
+
+
+    private List<T> toList() {
+        acquireLock();
+        try {
+            List<T> elements = new ArrayList<>(size);
+            for (Node<T> node = head; node != null; node = node.next) {
+                elements.add(node.value);
             }
+            return elements;
         } finally {
             lock.unlock();
         }
-        return c.size();
     }
 
+    private void acquireLock() {
+        ContentionRecorder recorder = contentionRecorder;
+        if (recorder == null) {
+            lock.lock();
+            return;
+        }
+        boolean isContended = lock.isLocked();
+        long start = System.nanoTime();
+        lock.lock();
+        recorder.recordLockAcquire(System.nanoTime() - start, isContended);
+    }
+
+    private long startWait() {
+        return contentionRecorder == null ? 0 : System.nanoTime();
+    }
+
+    private void recordProducerWait(long waitStart) {
+        ContentionRecorder recorder = contentionRecorder;
+        if (recorder != null && waitStart != 0) {
+            recorder.producerWaitCount.increment();
+            recorder.totalProducerWaitNanos.add(System.nanoTime() - waitStart);
+        }
+    }
+
+    private void recordConsumerWait(long waitStart) {
+        ContentionRecorder recorder = contentionRecorder;
+        if (recorder != null && waitStart != 0) {
+            recorder.consumerWaitCount.increment();
+            recorder.totalConsumerWaitNanos.add(System.nanoTime() - waitStart);
+        }
+    }
 
     private void checkIfNull(Object o) {
         if (Objects.isNull(o)) {
@@ -162,32 +398,211 @@ public class SimpleLinkedBlockingQueue<T> {
         }
     }
 
-    private void addElement(T t) {
-        Node<T> elementNode = new Node<>(t);
-        if (size == 0){
-            head = tail = elementNode;
+    private long weigh(T t) {
+        long weight = weigher.applyAsLong(t);
+        if (weight < 0) {
+            throw new IllegalArgumentException("Element weight cannot be less than zero: " + weight);
+        }
+        return weight;
+    }
+
+    private boolean isFull(long weight) {
+        return size == capacity || (size > 0 && totalWeight + weight > weightCapacity);
+    }
+
+    private void addElement(T t, long weight) {
+        Node<T> elementNode = new Node<>(this, t, weight);
+        Node<T> prev = tail;
+        if (comparator != null) {
+            int order = 0;
+            while (prev != null && (order = comparator.compare(prev.value, t)) > 0) {
+                prev = prev.run.first.prev;
+            }
+            elementNode.run = prev != null && order == 0 ? prev.run : new Run<>(elementNode);
+        }
+        Node<T> next = prev == null ? head : prev.next;
+        elementNode.prev = prev;
+        elementNode.next = next;
+        if (prev == null) {
+            head = elementNode;
         } else {
-            tail.next = elementNode;
-            tail = tail.next;
+            prev.next = elementNode;
+        }
+        if (next == null) {
+            tail = elementNode;
+        } else {
+            next.prev = elementNode;
         }
         size++;
+        totalWeight += weight;
+        if (t instanceof NodeAware) {
+            ((NodeAware) t).setQueueNode(elementNode);
+        }
         readCondition.signal();
+        ContentionRecorder recorder = contentionRecorder;
+        if (recorder != null) {
+            recorder.readSignalCount.increment();
+        }
     }
 
     private T getElement() {
-        T element = head.value;
-        size--;
-        head = head.next;
-        writeCondition.signal();
+        Node<T> node = head;
+        T element = node.value;
+        unlink(node);
         return element;
     }
 
+    @SuppressWarnings("unchecked")
+    private Node<T> findNode(Object o) {
+        if (o instanceof NodeAware) {
+            Object queueNode = ((NodeAware) o).getQueueNode();
+            if (queueNode instanceof Node && ((Node<?>) queueNode).queue == this) {
+                return (Node<T>) queueNode;
+            }
+            return null;
+        }
+        for (Node<T> node = head; node != null; node = node.next) {
+            if (o.equals(node.value)) {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    private void unlink(Node<T> node) {
+        Node<T> prev = node.prev;
+        Node<T> next = node.next;
+        Run<T> run = node.run;
+        if (run != null && run.first == node) {
+            run.first = next != null && next.run == run ? next : null;
+        }
+        node.run = null;
+        if (prev == null) {
+            head = next;
+        } else {
+            prev.next = next;
+        }
+        if (next == null) {
+            tail = prev;
+        } else {
+            next.prev = prev;
+        }
+        if (node.value instanceof NodeAware && ((NodeAware) node.value).getQueueNode() == node) {
+            ((NodeAware) node.value).setQueueNode(null);
+        }
+        node.prev = node.next = null;
+        node.value = null;
+        size--;
+        totalWeight -= node.weight;
+        writeCondition.signalAll();
+        ContentionRecorder recorder = contentionRecorder;
+        if (recorder != null) {
+            recorder.writeSignalCount.increment();
+        }
+    }
+
+    /**
+     * Removes the element from the queue that currently holds it, if any.
+     *
+     * @return {@code true} if the element was found and removed
+     */
+    static boolean removeFromQueue(NodeAware element) {
+        Object queueNode = element.getQueueNode();
+        return queueNode instanceof Node && ((Node<?>) queueNode).queue.remove(element);
+    }
+
+    /**
+     * Implemented by elements that remember the queue node holding them, which makes
+     * {@link #remove(Object)} O(1) for them instead of a scan. Such an element is looked up
+     * by its node only, so it must not be held by two queues at the same time.
+     */
+    interface NodeAware {
+
+        Object getQueueNode();
+
+        void setQueueNode(Object queueNode);
+    }
+
+    private class SnapshotIterator implements Iterator<T> {
+        private final Iterator<T> snapshot;
+        private T lastReturned;
+
+        private SnapshotIterator(List<T> elements) {
+            this.snapshot = elements.iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return snapshot.hasNext();
+        }
+
+        @Override
+        public T next() {
+            lastReturned = snapshot.next();
+            return lastReturned;
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == null) {
+                throw new IllegalStateException();
+            }
+            SimpleLinkedBlockingQueue.this.remove(lastReturned);
+            lastReturned = null;
+        }
+    }
+
+    private static class ContentionRecorder {
+        private final LongAdder lockAcquireCount = new LongAdder();
+        private final LongAdder contendedLockAcquireCount = new LongAdder();
+        private final LongAdder totalLockAcquireNanos = new LongAdder();
+        private final LongAccumulator maxLockAcquireNanos = new LongAccumulator(Math::max, 0);
+        private final LongAdder producerWaitCount = new LongAdder();
+        private final LongAdder totalProducerWaitNanos = new LongAdder();
+        private final LongAdder consumerWaitCount = new LongAdder();
+        private final LongAdder totalConsumerWaitNanos = new LongAdder();
+        private final LongAdder readSignalCount = new LongAdder();
+        private final LongAdder writeSignalCount = new LongAdder();
+
+        private void recordLockAcquire(long nanos, boolean isContended) {
+            lockAcquireCount.increment();
+            if (isContended) {
+                contendedLockAcquireCount.increment();
+                totalLockAcquireNanos.add(nanos);
+                maxLockAcquireNanos.accumulate(nanos);
+            }
+        }
+
+        private QueueStatistics snapshot() {
+            return new QueueStatistics(lockAcquireCount.sum(), contendedLockAcquireCount.sum(), totalLockAcquireNanos.sum(),
+                    maxLockAcquireNanos.get(), producerWaitCount.sum(), totalProducerWaitNanos.sum(), consumerWaitCount.sum(),
+                    totalConsumerWaitNanos.sum(), readSignalCount.sum(), writeSignalCount.sum());
+        }
+    }
+
+    /**
+     * Adjacent elements equal by the comparator, {@link #first} is the node closest to the head.
+     */
+    private static class Run<T> {
+        private Node<T> first;
+
+        private Run(Node<T> first) {
+            this.first = first;
+        }
+    }
+
     private static class Node<T> {
+        private final SimpleLinkedBlockingQueue<T> queue;
+        private Node<T> prev;
         private Node<T> next;
+        private Run<T> run;
         private T value;
+        private final long weight;
 
-        private Node(T value) {
+        private Node(SimpleLinkedBlockingQueue<T> queue, T value, long weight) {
+            this.queue = queue;
             this.value = value;
+            this.weight = weight;
         }
     }
-}
\ No newline at end of file
+}
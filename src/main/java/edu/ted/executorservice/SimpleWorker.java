@@ -1,57 +1,276 @@
 package edu.ted.executorservice;
 
 import lombok.extern.slf4j.Slf4j;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
 
 @Slf4j
 public class SimpleWorker implements Runnable {
 
-    private Thread myThread;
+    private static final long RETIREMENT_CHECK_PERIOD_MILLIS = 50;
+    private static final Object IDLE = new Object();
+    private static final Object RESCAN = new Object();
+    private static final ThreadLocal<SimpleWorker> CURRENT_WORKER = new ThreadLocal<>();
+
+    private volatile Thread myThread;
     private final Semaphore isRunningSemaphore = new Semaphore(1, false);
     private final CountDownLatch terminationLatch;
     private final String workerId;
     private volatile boolean isRunning = true;
 
-    private final SimpleLinkedBlockingQueue<FutureTask<?>> queue;
+    private final BlockingQueue<Runnable> queue;
+    private final BooleanSupplier retirementCondition;
+    private final Deque<SimpleWorker> idleWorkers;
+    private final AtomicReference<Object> handOffSlot = new AtomicReference<>();
+    private final AtomicReference<Runnable> pendingTask = new AtomicReference<>();
+    private Runnable taskTakenListener;
+    private Map<WorkerResource<?>, Object> resources;
+
+    public SimpleWorker(BlockingQueue<Runnable> queue, String workerId, CountDownLatch terminationLatch) {
+        this(queue, workerId, terminationLatch, null, null);
+    }
+
+    /**
+     * Creates a worker that accepts tasks handed off directly by {@link #handOff(Runnable)}.
+     * When the queue is empty the worker pushes itself onto {@code idleWorkers} and parks
+     * until a task is handed off to it instead of waiting on the queue.
+     */
+    SimpleWorker(BlockingQueue<Runnable> queue, String workerId, CountDownLatch terminationLatch, Deque<SimpleWorker> idleWorkers) {
+        this(queue, workerId, terminationLatch, null, idleWorkers);
+    }
+
+    /**
+     * Creates a temporary worker that stops once {@code retirementCondition} returns {@code true}.
+     * The condition is checked between tasks and at least every {@value #RETIREMENT_CHECK_PERIOD_MILLIS} ms while idle.
+     *
+     * @param terminationLatch may be {@code null} for a worker the pool does not wait for on termination
+     */
+    SimpleWorker(BlockingQueue<Runnable> queue, String workerId, CountDownLatch terminationLatch, BooleanSupplier retirementCondition) {
+        this(queue, workerId, terminationLatch, retirementCondition, null);
+    }
 
-    public SimpleWorker(SimpleLinkedBlockingQueue<FutureTask<?>> queue, String workerId, CountDownLatch terminationLatch) {
+    private SimpleWorker(BlockingQueue<Runnable> queue, String workerId, CountDownLatch terminationLatch,
+                         BooleanSupplier retirementCondition, Deque<SimpleWorker> idleWorkers) {
         this.queue = queue;
         this.workerId = workerId;
         this.terminationLatch = terminationLatch;
+        this.retirementCondition = retirementCondition;
+        this.idleWorkers = idleWorkers;
     }
 
     public void run() {
         try {
             myThread = Thread.currentThread();
+            CURRENT_WORKER.set(this);
             log.debug("{}: started in {}", workerId, myThread.getName());
 
             while (isRunning && !Thread.interrupted()) {
-                FutureTask<?> task = getTask();
-                isRunningSemaphore.acquire();
-                try {
-                    log.debug("{}: got the task. Execution started", workerId);
-                    task.run();
-                } catch (Exception e) {
-                    log.debug("{}: finished current task abnormally", workerId, e);
-                } finally {
-                    isRunningSemaphore.release();
+                if (retirementCondition != null && retirementCondition.getAsBoolean()) {
+                    log.debug("{}: retired", workerId);
+                    break;
+                }
+                Runnable task = getTask();
+                if (task == null) {
+                    continue;
                 }
+                if (taskTakenListener != null) {
+                    taskTakenListener.run();
+                }
+                runTask(task);
             }
         } catch (InterruptedException e) {
             log.debug("{}: worker was interrupted", workerId, e);
             shutdown();
         } finally {
-            terminationLatch.countDown();
+            //a task stashed by the worker is not in the queue any more, nobody else would run it
+            Runnable stashedTask = pendingTask.getAndSet(null);
+            if (stashedTask != null) {
+                runTask(stashedTask);
+            }
+            closeResources();
+            CURRENT_WORKER.remove();
+            if (terminationLatch != null) {
+                terminationLatch.countDown();
+            }
             log.debug("{}: finished", workerId);
         }
     }
 
-    private FutureTask<?> getTask() throws InterruptedException {
-        return queue.take();
+    /**
+     * Runs the task once taken, an interrupt does not make the worker drop it.
+     */
+    private void runTask(Runnable task) {
+        isRunningSemaphore.acquireUninterruptibly();
+        try {
+            log.debug("{}: got the task. Execution started", workerId);
+            task.run();
+            if (task instanceof Future && ((Future<?>) task).isCancelled() && isRunning) {
+                //cancel(true) interrupted the task, the worker itself keeps running
+                Thread.interrupted();
+            }
+        } catch (Exception e) {
+            log.debug("{}: finished current task abnormally", workerId, e);
+        } finally {
+            isRunningSemaphore.release();
+        }
+    }
+
+    /**
+     * @return the worker running on the current thread, or {@code null}
+     */
+    static SimpleWorker current() {
+        return CURRENT_WORKER.get();
+    }
+
+    /**
+     * Returns the worker instance of the resource, creating it on first use. Must be called from the worker thread.
+     */
+    @SuppressWarnings("unchecked")
+    <T> T getResource(WorkerResource<T> resource) {
+        if (resources == null) {
+            resources = new LinkedHashMap<>();
+        }
+        Object instance = resources.get(resource);
+        if (instance == null) {
+            instance = Objects.requireNonNull(resource.create(), "Worker resource factory returned null");
+            resources.put(resource, instance);
+            log.debug("{}: worker resource created", workerId);
+        }
+        return (T) instance;
+    }
+
+    /**
+     * Closes the worker resources in reverse creation order; a failing close does not prevent the others.
+     */
+    @SuppressWarnings("unchecked")
+    private void closeResources() {
+        if (resources == null) {
+            return;
+        }
+        List<Map.Entry<WorkerResource<?>, Object>> createdResources = new ArrayList<>(resources.entrySet());
+        resources = null;
+        for (int i = createdResources.size() - 1; i >= 0; i--) {
+            Map.Entry<WorkerResource<?>, Object> entry = createdResources.get(i);
+            try {
+                ((WorkerResource<Object>) entry.getKey()).close(entry.getValue());
+            } catch (RuntimeException e) {
+                log.debug("{}: worker resource cannot be closed", workerId, e);
+            }
+        }
+    }
+
+    private Runnable getTask() throws InterruptedException {
+        if (retirementCondition != null) {
+            return queue.poll(RETIREMENT_CHECK_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        if (idleWorkers == null) {
+            return queue.take();
+        }
+        Runnable task = pendingTask.getAndSet(null);
+        if (task != null) {
+            return task;
+        }
+        task = queue.poll();
+        return task != null ? task : awaitHandOff();
+    }
+
+    /**
+     * Parks the worker as idle until a task is handed off or a {@link #wakeUp() rescan} is requested.
+     * The queue is checked again after the worker is published as idle, so a task queued by a submitter
+     * that found no idle worker is not missed.
+     *
+     * @return the handed off task or {@code null} if the queue should be polled again
+     */
+    private Runnable awaitHandOff() throws InterruptedException {
+        handOffSlot.set(IDLE);
+        idleWorkers.push(this);
+        Runnable queuedTask = queue.poll();
+        if (queuedTask != null) {
+            if (!handOffSlot.compareAndSet(IDLE, null)) {
+                pendingTask.set(takeHandedOffTask());
+            }
+            return queuedTask;
+        }
+        while (handOffSlot.get() == IDLE) {
+            if (!isRunning || Thread.interrupted()) {
+                if (handOffSlot.compareAndSet(IDLE, null)) {
+                    if (isRunning) {
+                        throw new InterruptedException();
+                    }
+                    return null;
+                }
+                break;
+            }
+            LockSupport.park(this);
+        }
+        return takeHandedOffTask();
+    }
+
+    private Runnable takeHandedOffTask() {
+        Object handedOff = handOffSlot.getAndSet(null);
+        return handedOff instanceof Runnable ? (Runnable) handedOff : null;
+    }
+
+    /**
+     * Gives the task to this worker if it is parked idle.
+     *
+     * @return {@code false} if the worker is no longer idle and the task was not taken
+     */
+    boolean handOff(Runnable task) {
+        if (handOffSlot.compareAndSet(IDLE, task)) {
+            LockSupport.unpark(myThread);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Moves the task handed off to this worker or stashed by it, and not started yet, to {@code tasks}.
+     */
+    void drainTo(Collection<? super Runnable> tasks) {
+        Object handedOff = handOffSlot.get();
+        if (handedOff instanceof Runnable && handOffSlot.compareAndSet(handedOff, null)) {
+            tasks.add((Runnable) handedOff);
+        }
+        Runnable stashedTask = pendingTask.getAndSet(null);
+        if (stashedTask != null) {
+            tasks.add(stashedTask);
+        }
+    }
+
+    /**
+     * Makes an idle worker poll the queue again.
+     *
+     * @return {@code false} if the worker is no longer idle
+     */
+    boolean wakeUp() {
+        if (handOffSlot.compareAndSet(IDLE, RESCAN)) {
+            LockSupport.unpark(myThread);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Sets the action run by the worker thread every time it has taken a task, before the task runs.
+     * Must be called before the worker is started.
+     */
+    void setTaskTakenListener(Runnable taskTakenListener) {
+        this.taskTakenListener = taskTakenListener;
     }
 
     void shutdown() {
         isRunning = false;
+        LockSupport.unpark(myThread);
     }
 
     boolean isIdle() {
@@ -70,4 +289,8 @@ public class SimpleWorker implements Runnable {
         return myThread;
     }
 
+    void setWorkerThread(Thread workerThread) {
+        myThread = workerThread;
+    }
+
 }
@@ -0,0 +1,307 @@
+package edu.ted.executorservice;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Graph of dependent tasks executed by {@link SimpleFixedThreadPool#submitGraph(TaskGraph)}.
+ * <p>
+ * A node is queued only once all of its dependencies have completed successfully, so no worker
+ * ever blocks waiting for another node. A task reads the results of its dependencies with
+ * {@link Node#getResult()}. A failed or cancelled node cancels all nodes that depend on it.
+ * Ready nodes are submitted without blocking: when the pool queue is full they wait in the graph
+ * and are submitted as workers free up queue capacity, so a node with many dependents cannot block
+ * the worker that completed it.
+ * The graph is acyclic by construction, because dependencies must be added before their dependents.
+ * A graph can be submitted only once.
+ */
+@Slf4j
+public class TaskGraph {
+
+    private final List<Node<?>> nodes = new ArrayList<>();
+    private final AtomicReference<Throwable> firstFailure = new AtomicReference<>();
+    private final AtomicInteger remainingNodeCount = new AtomicInteger();
+    private final GraphCompletion completion = new GraphCompletion();
+    private final Deque<Node<?>> readyNodes = new ConcurrentLinkedDeque<>();
+    private final AtomicBoolean isWaitingForCapacity = new AtomicBoolean();
+    private final Runnable capacityWaiter = () -> {
+        isWaitingForCapacity.set(false);
+        submitReadyNodes();
+    };
+    private volatile SimpleFixedThreadPool pool;
+    private boolean isSubmitted;
+
+    /**
+     * Adds a task that is started once all {@code dependencies} have completed successfully.
+     *
+     * @throws IllegalArgumentException if a dependency belongs to another graph
+     * @throws IllegalStateException    if the graph was already submitted
+     */
+    public synchronized <T> Node<T> addTask(String name, Callable<T> task, Node<?>... dependencies) {
+        if (isSubmitted) {
+            throw new IllegalStateException("Task graph is already submitted");
+        }
+        Node<T> node = new Node<>(this, Objects.requireNonNull(name), Objects.requireNonNull(task));
+        for (Node<?> dependency : dependencies) {
+            if (dependency.graph != this) {
+                throw new IllegalArgumentException("Dependency " + dependency.name + " belongs to another graph");
+            }
+            node.dependencies.add(dependency);
+            dependency.dependents.add(node);
+        }
+        node.pendingDependencyCount.set(node.dependencies.size());
+        nodes.add(node);
+        return node;
+    }
+
+    public synchronized List<Node<?>> getNodes() {
+        return Collections.unmodifiableList(new ArrayList<>(nodes));
+    }
+
+    /**
+     * Chain of nodes that determined the completion time of the graph: starting from the node
+     * that finished last, each step goes back to the dependency that finished last.
+     * Empty until the graph has completed.
+     */
+    public List<Node<?>> getCriticalPath() {
+        if (!completion.isDone()) {
+            return Collections.emptyList();
+        }
+        Node<?> current = null;
+        for (Node<?> node : getNodes()) {
+            if (node.hasRun() && (current == null || node.endNanos - current.endNanos > 0)) {
+                current = node;
+            }
+        }
+        LinkedList<Node<?>> criticalPath = new LinkedList<>();
+        while (current != null) {
+            criticalPath.addFirst(current);
+            Node<?> latestDependency = null;
+            for (Node<?> dependency : current.dependencies) {
+                if (dependency.hasRun() && (latestDependency == null || dependency.endNanos - latestDependency.endNanos > 0)) {
+                    latestDependency = dependency;
+                }
+            }
+            current = latestDependency;
+        }
+        return criticalPath;
+    }
+
+    /**
+     * Sum of the run times of the nodes on the {@link #getCriticalPath() critical path},
+     * the lower bound of the graph run time with unlimited workers.
+     */
+    public long getCriticalPathTime(TimeUnit unit) {
+        long criticalPathNanos = 0;
+        for (Node<?> node : getCriticalPath()) {
+            criticalPathNanos += node.endNanos - node.startNanos;
+        }
+        return unit.convert(criticalPathNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Starts the root nodes in the {@code pool}; the others are submitted as their dependencies complete.
+     */
+    Future<Void> submit(SimpleFixedThreadPool pool) {
+        List<Node<?>> graphNodes;
+        synchronized (this) {
+            if (isSubmitted) {
+                throw new IllegalStateException("Task graph is already submitted");
+            }
+            isSubmitted = true;
+            graphNodes = new ArrayList<>(nodes);
+            this.pool = pool;
+        }
+        remainingNodeCount.set(graphNodes.size());
+        if (graphNodes.isEmpty()) {
+            completion.finish();
+            return completion;
+        }
+        for (Node<?> node : graphNodes) {
+            node.future.addCompletionListener(() -> onNodeDone(node));
+        }
+        for (Node<?> node : graphNodes) {
+            if (node.dependencies.isEmpty()) {
+                readyNodes.add(node);
+            }
+        }
+        submitReadyNodes();
+        return completion;
+    }
+
+    private void onNodeDone(Node<?> node) {
+        Throwable failure = node.getFailure();
+        if (failure != null) {
+            firstFailure.compareAndSet(null, failure);
+        }
+        for (Node<?> dependent : node.dependents) {
+            if (failure != null || node.future.isCancelled()) {
+                dependent.future.cancel(false);
+            } else if (dependent.pendingDependencyCount.decrementAndGet() == 0) {
+                readyNodes.add(dependent);
+            }
+        }
+        submitReadyNodes();
+        if (remainingNodeCount.decrementAndGet() == 0) {
+            completion.finish();
+        }
+    }
+
+    private void submitReadyNodes() {
+        Node<?> node;
+        while ((node = readyNodes.poll()) != null) {
+            if (!trySubmitNode(node)) {
+                readyNodes.addFirst(node);
+                if (!isWaitingForCapacity.compareAndSet(false, true)) {
+                    return;
+                }
+                pool.whenQueueCapacityFreed(capacityWaiter);
+                //capacity freed before the waiter was registered is picked up by one more round
+            }
+        }
+    }
+
+    /**
+     * @return false if the pool queue is full
+     */
+    private boolean trySubmitNode(Node<?> node) {
+        if (node.future.isDone()) {
+            return true;
+        }
+        try {
+            return pool.tryInternalSubmit(node.future);
+        } catch (RejectedExecutionException e) {
+            log.debug("Node {} is rejected by the pool", node.name, e);
+            firstFailure.compareAndSet(null, e);
+            node.future.cancel(false);
+            return true;
+        }
+    }
+
+    private void cancelNodes(boolean mayInterruptIfRunning) {
+        for (Node<?> node : getNodes()) {
+            node.future.cancel(mayInterruptIfRunning);
+        }
+    }
+
+    /**
+     * Single task of a {@link TaskGraph}.
+     */
+    public static class Node<T> {
+        private final TaskGraph graph;
+        private final String name;
+        private final SimpleFutureTask<T> future;
+        private final List<Node<?>> dependencies = new ArrayList<>();
+        private final List<Node<?>> dependents = new ArrayList<>();
+        private final AtomicInteger pendingDependencyCount = new AtomicInteger();
+        private volatile long startNanos;
+        private volatile long endNanos;
+        private volatile boolean hasRun;
+
+        private Node(TaskGraph graph, String name, Callable<T> task) {
+            this.graph = graph;
+            this.name = name;
+            this.future = new SimpleFutureTask<>(() -> {
+                startNanos = System.nanoTime();
+                try {
+                    return task.call();
+                } finally {
+                    endNanos = System.nanoTime();
+                    hasRun = true;
+                }
+            }, task);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Future of the node task; cancelling it also cancels every node that depends on it.
+         */
+        public Future<T> getFuture() {
+            return future;
+        }
+
+        /**
+         * Result of the completed node, meant to be called by the tasks of the dependent nodes.
+         *
+         * @throws IllegalStateException if the node has not completed successfully
+         */
+        public T getResult() {
+            if (!future.isDone() || future.isCancelled()) {
+                throw new IllegalStateException("Node " + name + " has not completed");
+            }
+            try {
+                return future.get();
+            } catch (InterruptedException | ExecutionException e) {
+                throw new IllegalStateException("Node " + name + " has failed", e);
+            }
+        }
+
+        /**
+         * Time the node task was running, 0 if it has not run.
+         */
+        public long getRunTime(TimeUnit unit) {
+            return hasRun ? unit.convert(endNanos - startNanos, TimeUnit.NANOSECONDS) : 0;
+        }
+
+        private boolean hasRun() {
+            return hasRun;
+        }
+
+        private Throwable getFailure() {
+            if (!future.isDone() || future.isCancelled()) {
+                return null;
+            }
+            try {
+                future.get();
+                return null;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (ExecutionException e) {
+                return e.getCause();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "Node{" + name + '}';
+        }
+    }
+
+    /**
+     * Completes when every node is done: with the first node failure, cancelled if any node
+     * was cancelled, and successfully otherwise. Cancelling it cancels all nodes of the graph.
+     */
+    private class GraphCompletion extends CompletableFuture<Void> {
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean isCancelled = super.cancel(mayInterruptIfRunning);
+            cancelNodes(mayInterruptIfRunning);
+            return isCancelled;
+        }
+
+        private void finish() {
+            Throwable failure = firstFailure.get();
+            if (failure != null) {
+                completeExceptionally(failure);
+                return;
+            }
+            for (Node<?> node : getNodes()) {
+                if (node.future.isCancelled()) {
+                    super.cancel(false);
+                    return;
+                }
+            }
+            complete(null);
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package edu.ted.executorservice;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-tenant sub-queues served by weighted deficit round-robin.
+ * <p>
+ * The pool queue does not hold tenant tasks themselves: for every task added to a tenant sub-queue
+ * one dispatch ticket is put into the pool queue. When a worker runs it, the ticket picks the next
+ * tenant task by deficit round-robin and runs it in place. A ticket stands for one queued tenant task,
+ * weighs as much as the task it was queued for, and is removed from the pool queue when its task is cancelled,
+ * so the pool queue counts and weighs exactly the queued tenant tasks. When a ticket dispatches another task
+ * than its own, the ticket of the dispatched task takes over its own still queued task.
+ * Every task costs one unit; a tenant with weight {@code n} gets up to {@code n} tasks per round.
+ */
+@Slf4j
+class TenantScheduler {
+
+    private final Map<String, Tenant> tenants = new LinkedHashMap<>();
+    private final List<Tenant> tenantRing = new ArrayList<>();
+    private final Map<SimpleFutureTask<?>, DispatchTicket> ticketsByTask = new IdentityHashMap<>();
+    private int cursor;
+
+    synchronized void registerTenant(String tenant, int weight, int maxQueuedTasks) {
+        if (weight <= 0 || maxQueuedTasks <= 0) {
+            throw new IllegalArgumentException("Tenant weight and queue capacity must be positive: " + weight + ", " + maxQueuedTasks);
+        }
+        if (tenants.containsKey(tenant)) {
+            throw new IllegalArgumentException("Tenant is already registered: " + tenant);
+        }
+        Tenant newTenant = new Tenant(tenant, weight, maxQueuedTasks);
+        tenants.put(tenant, newTenant);
+        tenantRing.add(newTenant);
+    }
+
+    /**
+     * Adds the task to the tenant sub-queue.
+     *
+     * @return the dispatch ticket the caller must enqueue into the pool queue
+     * @throws RejectedExecutionException if the tenant sub-queue is full
+     */
+    FutureTask<Void> enqueue(String tenant, SimpleFutureTask<?> task) {
+        Tenant target = getTenant(tenant);
+        task.setQueuedAt(System.nanoTime());
+        DispatchTicket ticket = new DispatchTicket(task);
+        synchronized (this) {
+            ticketsByTask.put(task, ticket);
+        }
+        if (!target.queue.offer(task)) {
+            discardTicket(task);
+            throw new RejectedExecutionException("Queue of tenant " + tenant + " is full");
+        }
+        task.addCompletionListener(() -> discardTicket(task));
+        return ticket;
+    }
+
+    /**
+     * Removes the ticket standing for a task that left its tenant sub-queue without being dispatched,
+     * e.g. because it was cancelled, drained or could not be queued into the pool.
+     */
+    void discardTicket(SimpleFutureTask<?> task) {
+        DispatchTicket ticket;
+        synchronized (this) {
+            ticket = ticketsByTask.remove(task);
+            if (ticket == null) {
+                return;
+            }
+            ticket.boundTask = null;
+        }
+        SimpleLinkedBlockingQueue.removeFromQueue(ticket);
+    }
+
+    static boolean isDispatchTask(Object task) {
+        return task instanceof DispatchTicket;
+    }
+
+    /**
+     * @return the tenant task a dispatch ticket was queued for, any other task as is
+     */
+    static Runnable getSubmittedTask(Runnable task) {
+        return task instanceof DispatchTicket ? ((DispatchTicket) task).submittedTask : task;
+    }
+
+    void drainTo(Collection<? super SimpleFutureTask<?>> tasks) {
+        for (Tenant tenant : getTenants()) {
+            SimpleFutureTask<?> task;
+            while ((task = tenant.queue.poll()) != null) {
+                discardTicket(task);
+                tasks.add(task);
+            }
+        }
+    }
+
+    void drainTo(String tenant, Collection<? super SimpleFutureTask<?>> tasks) {
+        List<SimpleFutureTask<?>> drainedTasks = new ArrayList<>();
+        getTenant(tenant).queue.drainTo(drainedTasks);
+        for (SimpleFutureTask<?> task : drainedTasks) {
+            discardTicket(task);
+        }
+        tasks.addAll(drainedTasks);
+    }
+
+    synchronized TenantStatistics getStatistics(String tenant) {
+        return getTenant(tenant).getStatistics();
+    }
+
+    synchronized Map<String, TenantStatistics> getStatistics() {
+        Map<String, TenantStatistics> statistics = new LinkedHashMap<>();
+        for (Tenant tenant : tenants.values()) {
+            statistics.put(tenant.name, tenant.getStatistics());
+        }
+        return statistics;
+    }
+
+    private synchronized Tenant getTenant(String tenant) {
+        Tenant target = tenants.get(tenant);
+        if (target == null) {
+            throw new IllegalArgumentException("Tenant is not registered: " + tenant);
+        }
+        return target;
+    }
+
+    private synchronized List<Tenant> getTenants() {
+        return new ArrayList<>(tenantRing);
+    }
+
+    private synchronized SimpleFutureTask<?> nextTask(DispatchTicket dispatchingTicket) {
+        int tenantCount = tenantRing.size();
+        for (int visited = 0; visited < tenantCount; visited++) {
+            Tenant tenant = tenantRing.get(cursor);
+            SimpleFutureTask<?> task = null;
+            if (tenant.queue.size() > 0) {
+                if (tenant.deficit <= 0) {
+                    tenant.deficit += tenant.weight;
+                }
+                task = tenant.queue.poll();
+            }
+            if (task == null) {
+                //an idle tenant does not accumulate credit
+                tenant.deficit = 0;
+                cursor = (cursor + 1) % tenantCount;
+                continue;
+            }
+            if (--tenant.deficit <= 0) {
+                cursor = (cursor + 1) % tenantCount;
+            }
+            tenant.recordDispatch(System.nanoTime() - task.getQueuedAt());
+            rebindTickets(dispatchingTicket, task);
+            return task;
+        }
+        return null;
+    }
+
+    /**
+     * Keeps one queued ticket per queued task once the {@code dispatchingTicket} has taken {@code dispatchedTask}.
+     */
+    private void rebindTickets(DispatchTicket dispatchingTicket, SimpleFutureTask<?> dispatchedTask) {
+        DispatchTicket dispatchedTicket = ticketsByTask.remove(dispatchedTask);
+        SimpleFutureTask<?> boundTask = dispatchingTicket.boundTask;
+        dispatchingTicket.boundTask = null;
+        if (dispatchedTicket == null || dispatchedTicket == dispatchingTicket) {
+            return;
+        }
+        if (boundTask != null) {
+            dispatchedTicket.boundTask = boundTask;
+            ticketsByTask.put(boundTask, dispatchedTicket);
+        } else {
+            //the task of the dispatching ticket was discarded while the ticket was running
+            dispatchedTicket.boundTask = null;
+            SimpleLinkedBlockingQueue.removeFromQueue(dispatchedTicket);
+        }
+    }
+
+    private class DispatchTicket extends FutureTask<Void> implements SimpleLinkedBlockingQueue.NodeAware {
+
+        private final SimpleFutureTask<?> submittedTask;
+        //guarded by the scheduler
+        private SimpleFutureTask<?> boundTask;
+        private volatile Object queueNode;
+
+        private DispatchTicket(SimpleFutureTask<?> submittedTask) {
+            super(() -> null);
+            this.submittedTask = submittedTask;
+            this.boundTask = submittedTask;
+        }
+
+        @Override
+        public Object getQueueNode() {
+            return queueNode;
+        }
+
+        @Override
+        public void setQueueNode(Object queueNode) {
+            this.queueNode = queueNode;
+        }
+
+        /**
+         * Does not complete the ticket itself, the dispatched tenant task reports the result.
+         */
+        @Override
+        public void run() {
+            SimpleFutureTask<?> task = nextTask(this);
+            if (task == null) {
+                log.debug("No tenant task to dispatch, it was cancelled or drained");
+                return;
+            }
+            task.run();
+            if (task.isCancelled()) {
+                //cancel(true) interrupts the worker, which must keep serving other tasks
+                Thread.interrupted();
+            }
+        }
+    }
+
+    private static class Tenant {
+        private final String name;
+        private final int weight;
+        private final SimpleLinkedBlockingQueue<SimpleFutureTask<?>> queue;
+        private final LongAdder dispatchedTaskCount = new LongAdder();
+        private final LongAdder totalQueueWaitNanos = new LongAdder();
+        private final LongAccumulator maxQueueWaitNanos = new LongAccumulator(Math::max, 0);
+        private int deficit;
+
+        private Tenant(String name, int weight, int maxQueuedTasks) {
+            this.name = name;
+            this.weight = weight;
+            this.queue = new SimpleLinkedBlockingQueue<>(maxQueuedTasks);
+        }
+
+        private void recordDispatch(long queueWaitNanos) {
+            dispatchedTaskCount.increment();
+            totalQueueWaitNanos.add(queueWaitNanos);
+            maxQueueWaitNanos.accumulate(queueWaitNanos);
+        }
+
+        private TenantStatistics getStatistics() {
+            return new TenantStatistics(name, weight, queue.size(), dispatchedTaskCount.sum(), totalQueueWaitNanos.sum(), maxQueueWaitNanos.get());
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package edu.ted.executorservice;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point-in-time snapshot of the metrics of a single tenant of {@link SimpleFixedThreadPool}.
+ */
+public class TenantStatistics {
+
+    private final String tenant;
+    private final int weight;
+    private final int queuedTaskCount;
+    private final long dispatchedTaskCount;
+    private final long totalQueueWaitNanos;
+    private final long maxQueueWaitNanos;
+
+    TenantStatistics(String tenant, int weight, int queuedTaskCount, long dispatchedTaskCount, long totalQueueWaitNanos, long maxQueueWaitNanos) {
+        this.tenant = tenant;
+        this.weight = weight;
+        this.queuedTaskCount = queuedTaskCount;
+        this.dispatchedTaskCount = dispatchedTaskCount;
+        this.totalQueueWaitNanos = totalQueueWaitNanos;
+        this.maxQueueWaitNanos = maxQueueWaitNanos;
+    }
+
+    public String getTenant() {
+        return tenant;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    public int getQueuedTaskCount() {
+        return queuedTaskCount;
+    }
+
+    public long getDispatchedTaskCount() {
+        return dispatchedTaskCount;
+    }
+
+    /**
+     * Sum of the time dispatched tasks spent in the tenant queue.
+     */
+    public long getTotalQueueWait(TimeUnit unit) {
+        return unit.convert(totalQueueWaitNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public long getMaxQueueWait(TimeUnit unit) {
+        return unit.convert(maxQueueWaitNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public long getAverageQueueWait(TimeUnit unit) {
+        return dispatchedTaskCount == 0 ? 0 : unit.convert(totalQueueWaitNanos / dispatchedTaskCount, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        return "TenantStatistics{" +
+                "tenant='" + tenant + '\'' +
+                ", weight=" + weight +
+                ", queuedTaskCount=" + queuedTaskCount +
+                ", dispatchedTaskCount=" + dispatchedTaskCount +
+                ", totalQueueWaitNanos=" + totalQueueWaitNanos +
+                ", maxQueueWaitNanos=" + maxQueueWaitNanos +
+                '}';
+    }
+}
@@ -0,0 +1,94 @@
+package edu.ted.executorservice;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * CPUs the worker threads of a {@link SimpleFixedThreadPool} are pinned to, see
+ * {@link SimpleFixedThreadPool#setWorkerPlacement(WorkerPlacement)}.
+ * Pinning keeps the scheduler from migrating workers between cores and sockets, so their caches stay warm.
+ * It is only done on Linux; elsewhere, or if {@link #isSupported()} is {@code false}, the placement is a no-op.
+ */
+public final class WorkerPlacement {
+
+    private final int[] cpus;
+    private final boolean isOneWorkerPerCpu;
+
+    private WorkerPlacement(int[] cpus, boolean isOneWorkerPerCpu) {
+        if (cpus.length == 0) {
+            throw new IllegalArgumentException("At least one CPU is required");
+        }
+        for (int cpu : cpus) {
+            if (cpu < 0) {
+                throw new IllegalArgumentException("CPU number cannot be less than zero: " + cpu);
+            }
+        }
+        this.cpus = cpus.clone();
+        this.isOneWorkerPerCpu = isOneWorkerPerCpu;
+    }
+
+    /**
+     * Every worker may run on any of the given CPUs.
+     */
+    public static WorkerPlacement anyOf(int... cpus) {
+        return new WorkerPlacement(cpus, false);
+    }
+
+    /**
+     * Worker {@code i} is pinned to {@code cpus[i % cpus.length]}; temporary compensating workers may run on any of them.
+     */
+    public static WorkerPlacement onePerCpu(int... cpus) {
+        return new WorkerPlacement(cpus, true);
+    }
+
+    /**
+     * One {@link #anyOf(int...)} placement per CPU socket with the online CPUs of the socket, ordered by socket id.
+     * If the topology cannot be read, a single placement with all available CPUs is returned.
+     */
+    public static List<WorkerPlacement> perSocket() {
+        List<WorkerPlacement> placements = new ArrayList<>();
+        for (List<Integer> socketCpus : CpuAffinity.readSocketCpus().values()) {
+            placements.add(anyOf(socketCpus.stream().mapToInt(Integer::intValue).toArray()));
+        }
+        return placements;
+    }
+
+    /**
+     * @return {@code true} if worker threads can be pinned on this system
+     */
+    public static boolean isSupported() {
+        return CpuAffinity.isSupported();
+    }
+
+    public int[] getCpus() {
+        return cpus.clone();
+    }
+
+    /**
+     * @param workerIndex index of a core worker, or a negative value for a compensating worker
+     */
+    int[] getWorkerCpus(int workerIndex) {
+        if (isOneWorkerPerCpu && workerIndex >= 0) {
+            return new int[]{cpus[workerIndex % cpus.length]};
+        }
+        return cpus;
+    }
+
+    /**
+     * Pins the calling worker thread.
+     *
+     * @return {@code false} if the thread was not pinned
+     */
+    boolean pinCurrentThread(int workerIndex) {
+        return CpuAffinity.pinCurrentThread(getWorkerCpus(workerIndex));
+    }
+
+    @Override
+    public String toString() {
+        return "WorkerPlacement{" +
+                "cpus=" + Arrays.toString(cpus) +
+                ", isOneWorkerPerCpu=" + isOneWorkerPerCpu +
+                '}';
+    }
+}
@@ -0,0 +1,70 @@
+package edu.ted.executorservice;
+
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Expensive per-thread state, such as buffers, parsers or connections, reused by all tasks a {@link SimpleWorker} runs.
+ * The instance is created by the factory on the first {@link #get()} in a worker and closed when the worker stops,
+ * whether it retires or the pool is shut down, so unlike a {@link ThreadLocal} it does not outlive the worker.
+ * Only the owning worker thread touches its instance, so no synchronization is needed.
+ * <p>
+ * A resource is a key like a {@link ThreadLocal} and is meant to be created once and kept in a static field.
+ */
+public final class WorkerResource<T> {
+
+    private final Supplier<? extends T> factory;
+    private final Consumer<? super T> closer;
+
+    private WorkerResource(Supplier<? extends T> factory, Consumer<? super T> closer) {
+        this.factory = Objects.requireNonNull(factory);
+        this.closer = Objects.requireNonNull(closer);
+    }
+
+    /**
+     * Creates a resource whose instances are closed with {@link AutoCloseable#close()} if they implement it.
+     */
+    public static <T> WorkerResource<T> of(Supplier<? extends T> factory) {
+        return new WorkerResource<>(factory, WorkerResource::closeIfCloseable);
+    }
+
+    /**
+     * Creates a resource whose instances are released by {@code closer} when the worker stops.
+     */
+    public static <T> WorkerResource<T> of(Supplier<? extends T> factory, Consumer<? super T> closer) {
+        return new WorkerResource<>(factory, closer);
+    }
+
+    /**
+     * @return the instance of the current worker, created on the first call in the worker
+     * @throws IllegalStateException if the current thread is not a {@link SimpleWorker}
+     */
+    public T get() {
+        SimpleWorker worker = SimpleWorker.current();
+        if (worker == null) {
+            throw new IllegalStateException("Worker resources are only available to tasks run by a SimpleWorker");
+        }
+        return worker.getResource(this);
+    }
+
+    T create() {
+        return factory.get();
+    }
+
+    void close(T instance) {
+        closer.accept(instance);
+    }
+
+    private static void closeIfCloseable(Object instance) {
+        if (instance instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) instance).close();
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException("Worker resource cannot be closed", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package edu.ted.executorservice;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Allocation regression tests: bytes allocated per task on the submitter and worker threads,
+ * measured with the HotSpot thread allocation counters after a JIT warm-up run.
+ * Budgets are about twice the measured values, so a new allocation on a hot path fails the test.
+ */
+@Slf4j
+public class AllocationBudgetTest {
+
+    private static final int POOL_SIZE = 2;
+    private static final int WARM_UP_TASK_COUNT = 20_000;
+    private static final int MEASURED_TASK_COUNT = 20_000;
+    private static final int BATCH_SIZE = 100;
+
+    private static final long SUBMIT_BUDGET_BYTES = 256;
+    private static final long EXECUTE_BUDGET_BYTES = 320;
+    private static final long INVOKE_ALL_BUDGET_BYTES = 640;
+    private static final long INVOKE_ANY_BUDGET_BYTES = 560;
+    private static final long SHUTDOWN_NOW_BUDGET_BYTES = 64;
+
+    private com.sun.management.ThreadMXBean threadMXBean;
+    private SimpleFixedThreadPool executor;
+    private Set<Thread> workerThreads;
+
+    @BeforeEach
+    public void init() throws InterruptedException, ExecutionException {
+        java.lang.management.ThreadMXBean platformThreadMXBean = ManagementFactory.getThreadMXBean();
+        assumeTrue(platformThreadMXBean instanceof com.sun.management.ThreadMXBean
+                        && ((com.sun.management.ThreadMXBean) platformThreadMXBean).isThreadAllocatedMemorySupported(),
+                "Thread allocation counters are not supported by the JVM");
+        threadMXBean = (com.sun.management.ThreadMXBean) platformThreadMXBean;
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+        executor = new SimpleFixedThreadPool(POOL_SIZE);
+        workerThreads = ConcurrentHashMap.newKeySet();
+        CyclicBarrier startBarrier = new CyclicBarrier(POOL_SIZE);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < POOL_SIZE; i++) {
+            futures.add(executor.submit(() -> {
+                workerThreads.add(Thread.currentThread());
+                startBarrier.await();
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+    }
+
+    @AfterEach
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void givenSubmit_whenTasksRun_thenAllocationWithinBudget() throws Exception {
+        final Callable<Void> task = () -> null;
+        long bytesPerTask = measureBytesPerTask(() -> {
+            Future<?> lastFuture = null;
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                lastFuture = executor.submit(task);
+            }
+            awaitQuietly(lastFuture);
+        });
+        assertWithinBudget("submit", bytesPerTask, SUBMIT_BUDGET_BYTES);
+    }
+
+    @Test
+    public void givenExecute_whenTasksRun_thenAllocationWithinBudget() throws Exception {
+        final Semaphore completedTasks = new Semaphore(0);
+        final Runnable task = completedTasks::release;
+        long bytesPerTask = measureBytesPerTask(() -> {
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                executor.execute(task);
+            }
+            completedTasks.acquireUninterruptibly(BATCH_SIZE);
+        });
+        assertWithinBudget("execute", bytesPerTask, EXECUTE_BUDGET_BYTES);
+    }
+
+    @Test
+    public void givenInvokeAll_whenTasksRun_thenAllocationWithinBudget() throws Exception {
+        final List<Callable<Void>> tasks = Collections.nCopies(BATCH_SIZE, () -> null);
+        long bytesPerTask = measureBytesPerTask(() -> {
+            try {
+                executor.invokeAll(tasks);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertWithinBudget("invokeAll", bytesPerTask, INVOKE_ALL_BUDGET_BYTES);
+    }
+
+    @Test
+    public void givenInvokeAny_whenTasksRun_thenAllocationWithinBudget() throws Exception {
+        final List<Callable<Void>> tasks = Collections.nCopies(BATCH_SIZE, () -> null);
+        long bytesPerTask = measureBytesPerTask(() -> {
+            try {
+                executor.invokeAny(tasks);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertWithinBudget("invokeAny", bytesPerTask, INVOKE_ANY_BUDGET_BYTES);
+    }
+
+    @Test
+    public void givenQueuedTasks_whenShutdownNow_thenAllocationWithinBudget() throws Exception {
+        final Callable<Void> task = () -> null;
+        for (int i = 0; i < 3; i++) {
+            measureShutdownNowBytesPerTask(task);
+        }
+        long bytesPerTask = measureShutdownNowBytesPerTask(task);
+        assertWithinBudget("shutdownNow", bytesPerTask, SHUTDOWN_NOW_BUDGET_BYTES);
+    }
+
+    /**
+     * Bytes allocated by {@code shutdownNow()} per queued task, on a fresh pool whose workers are blocked.
+     */
+    private long measureShutdownNowBytesPerTask(Callable<Void> task) throws InterruptedException {
+        SimpleFixedThreadPool blockedExecutor = new SimpleFixedThreadPool(1);
+        CountDownLatch blockingLatch = new CountDownLatch(1);
+        blockedExecutor.submit(() -> {
+            blockingLatch.await();
+            return null;
+        });
+        for (int i = 0; i < MEASURED_TASK_COUNT; i++) {
+            blockedExecutor.submit(task);
+        }
+        long allocatedBefore = threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        List<Runnable> notStartedTasks = blockedExecutor.shutdownNow();
+        long allocatedBytes = threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId()) - allocatedBefore;
+        blockingLatch.countDown();
+        assertTrue(notStartedTasks.size() >= MEASURED_TASK_COUNT - 1);
+        return allocatedBytes / notStartedTasks.size();
+    }
+
+    /**
+     * Runs the batch until {@value #WARM_UP_TASK_COUNT} tasks are done to warm up the JIT,
+     * then returns the bytes allocated per task by the submitter and worker threads.
+     */
+    private long measureBytesPerTask(Runnable batch) {
+        for (int i = 0; i < WARM_UP_TASK_COUNT; i += BATCH_SIZE) {
+            batch.run();
+        }
+        long[] threadIds = getMeasuredThreadIds();
+        long allocatedBefore = sum(threadMXBean.getThreadAllocatedBytes(threadIds));
+        for (int i = 0; i < MEASURED_TASK_COUNT; i += BATCH_SIZE) {
+            batch.run();
+        }
+        long allocatedBytes = sum(threadMXBean.getThreadAllocatedBytes(threadIds)) - allocatedBefore;
+        return allocatedBytes / MEASURED_TASK_COUNT;
+    }
+
+    private long[] getMeasuredThreadIds() {
+        long[] threadIds = new long[workerThreads.size() + 1];
+        int index = 0;
+        threadIds[index++] = Thread.currentThread().getId();
+        for (Thread workerThread : workerThreads) {
+            threadIds[index++] = workerThread.getId();
+        }
+        return threadIds;
+    }
+
+    private static long sum(long[] values) {
+        long sum = 0;
+        for (long value : values) {
+            sum += Math.max(value, 0);
+        }
+        return sum;
+    }
+
+    private static void awaitQuietly(Future<?> future) {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void assertWithinBudget(String path, long bytesPerTask, long budgetBytes) {
+        log.info("{}: {} bytes allocated per task, budget {}", path, bytesPerTask, budgetBytes);
+        assertTrue(bytesPerTask <= budgetBytes, path + " allocates " + bytesPerTask + " bytes per task, over the budget of " + budgetBytes);
+    }
+}
@@ -0,0 +1,59 @@
+package edu.ted.executorservice;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+public class DeadlineSubmitTest {
+
+    @Test
+    public void givenQueuedTasks_whenWorkerFree_thenEarliestDeadlineFirst() throws InterruptedException, ExecutionException {
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(1);
+        final CountDownLatch blockingLatch = new CountDownLatch(1);
+        final List<String> executionOrder = new CopyOnWriteArrayList<>();
+        executor.submit(() -> {
+            blockingLatch.await();
+            return null;
+        });
+        Thread.sleep(50);
+        Future<?> noDeadlineFuture = executor.submit(() -> executionOrder.add("none"));
+        executor.submit(() -> executionOrder.add("late"), 30, TimeUnit.SECONDS);
+        executor.submit(() -> executionOrder.add("early"), 10, TimeUnit.SECONDS);
+        executor.submit(() -> executionOrder.add("middle"), 20, TimeUnit.SECONDS);
+        blockingLatch.countDown();
+        noDeadlineFuture.get();
+        assertEquals(Arrays.asList("early", "middle", "late", "none"), executionOrder);
+        executor.shutdown();
+    }
+
+    @Test
+    public void givenDeadlinePassedWhileQueued_whenDequeued_thenExpiredWithoutRunning() throws InterruptedException {
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(1);
+        final CountDownLatch executionLatch = new CountDownLatch(1);
+        executor.submit(() -> {
+            Thread.sleep(200);
+            return null;
+        });
+        Thread.sleep(50);
+        Future<?> expiringFuture = executor.submit(executionLatch::countDown, 50, TimeUnit.MILLISECONDS);
+        ExecutionException exception = assertThrows(ExecutionException.class, expiringFuture::get);
+        assertTrue(exception.getCause() instanceof TimeoutException);
+        assertEquals(1, executionLatch.getCount());
+        assertEquals(1, executor.getStatistics().getExpiredTaskCount());
+        executor.shutdown();
+    }
+
+    @Test
+    public void givenDeadlineNotReached_whenRun_thenCompletedNormally() throws InterruptedException, ExecutionException {
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(2);
+        assertEquals(42, (int) executor.submit(() -> 42, 1, TimeUnit.SECONDS).get());
+        assertEquals(0, executor.getStatistics().getExpiredTaskCount());
+        executor.shutdown();
+    }
+}
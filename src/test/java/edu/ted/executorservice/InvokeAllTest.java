@@ -106,4 +106,53 @@ public class InvokeAllTest {
             assertTrue(resultMap.containsKey(i));
         }
     }
+
+    @Test
+    public void givenTasksLongerThanTimeout_whenInvokeAll_thenNotCompletedTasksCancelled() throws InterruptedException {
+        final ExecutorService executor = new SimpleFixedThreadPool(2);
+        List<Callable<Integer>> tasksList = new ArrayList<>();
+        tasksList.add(() -> 1);
+        tasksList.add(() -> {
+            Thread.sleep(2000);
+            return 2;
+        });
+        long timePoint = System.currentTimeMillis();
+        List<Future<Integer>> futureList = executor.invokeAll(tasksList, 200, TimeUnit.MILLISECONDS);
+        assertTrue((System.currentTimeMillis()) - timePoint < 2000);
+        assertFalse(futureList.get(0).isCancelled());
+        assertTrue(futureList.get(1).isCancelled());
+    }
+
+    @Test
+    public void givenQueuedTasksAfterTimeout_whenInvokeAll_thenCancelledTasksLeaveQueue() throws InterruptedException {
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(1);
+        List<Callable<Integer>> tasksList = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            tasksList.add(() -> {
+                Thread.sleep(100);
+                return 1;
+            });
+        }
+        executor.invokeAll(tasksList, 50, TimeUnit.MILLISECONDS);
+        assertEquals(0, executor.getStatistics().getQueuedTaskCount());
+    }
+
+    @Test
+    public void givenMicrosecondTimeout_whenInvokeAll_thenReturnsPromptlyWithTasksCancelled() throws InterruptedException {
+        final ExecutorService executor = new SimpleFixedThreadPool(2);
+        List<Callable<Integer>> tasksList = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            tasksList.add(() -> {
+                Thread.sleep(1000);
+                return 1;
+            });
+        }
+        long startNanos = System.nanoTime();
+        List<Future<Integer>> futureList = executor.invokeAll(tasksList, 500, TimeUnit.MICROSECONDS);
+        assertTrue(System.nanoTime() - startNanos < TimeUnit.MILLISECONDS.toNanos(200));
+        for (Future<Integer> future : futureList) {
+            assertTrue(future.isCancelled());
+        }
+        executor.shutdownNow();
+    }
 }
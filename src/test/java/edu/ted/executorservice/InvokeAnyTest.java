@@ -97,4 +97,47 @@ public class InvokeAnyTest {
         assertTrue(result > 0);
         assertTrue(result < taskNumber);
     }
+
+    @Test
+    public void givenAllTasksFailing_whenInvokeAny_thenExecutionException() {
+        final ExecutorService executor = new SimpleFixedThreadPool(4);
+        List<Callable<Integer>> tasksList = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            tasksList.add(() -> {
+                throw new IllegalStateException("TestException. Something went wrong");
+            });
+        }
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> executor.invokeAny(tasksList));
+        assertTrue(exception.getCause() instanceof IllegalStateException);
+    }
+
+    @Test
+    public void givenOneFastTask_whenInvokeAny_thenSlowTasksCancelled() throws ExecutionException, InterruptedException {
+        final ExecutorService executor = new SimpleFixedThreadPool(4);
+        List<Callable<Integer>> tasksList = new ArrayList<>();
+        tasksList.add(() -> {
+            Thread.sleep(2000);
+            return 2000;
+        });
+        tasksList.add(() -> 1);
+        long timePoint = System.currentTimeMillis();
+        assertEquals(1, (int) executor.invokeAny(tasksList));
+        assertTrue((System.currentTimeMillis()) - timePoint < 2000);
+    }
+
+    @Test
+    public void givenMicrosecondTimeout_whenInvokeAny_thenTimeoutExceptionPromptly() {
+        final ExecutorService executor = new SimpleFixedThreadPool(2);
+        List<Callable<Integer>> tasksList = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            tasksList.add(() -> {
+                Thread.sleep(1000);
+                return 1;
+            });
+        }
+        long startNanos = System.nanoTime();
+        assertThrows(TimeoutException.class, () -> executor.invokeAny(tasksList, 500, TimeUnit.MICROSECONDS));
+        assertTrue(System.nanoTime() - startNanos < TimeUnit.MILLISECONDS.toNanos(200));
+        executor.shutdownNow();
+    }
 }
@@ -0,0 +1,159 @@
+package edu.ted.executorservice;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+public class KeyedSubmitTest {
+
+    @Test
+    public void givenSameKeyInFlight_whenSubmitted_thenTaskRunsOnce() throws InterruptedException, ExecutionException {
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(4);
+        final AtomicInteger executionCount = new AtomicInteger();
+        List<Future<Integer>> futureList = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futureList.add(executor.submit("lookup", () -> {
+                Thread.sleep(200);
+                return executionCount.incrementAndGet();
+            }));
+        }
+        for (Future<Integer> future : futureList) {
+            assertEquals(1, (int) future.get());
+        }
+        assertEquals(1, executionCount.get());
+        executor.shutdown();
+    }
+
+    @Test
+    public void givenSharedKeyedTask_whenOneCallerCancels_thenOtherCallerStillGetsResult() throws InterruptedException, ExecutionException, TimeoutException {
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(2);
+        final AtomicInteger executionCount = new AtomicInteger();
+        final Callable<Integer> lookup = () -> {
+            Thread.sleep(200);
+            return executionCount.incrementAndGet();
+        };
+        Future<Integer> cancellingFuture = executor.submit("lookup", lookup);
+        Future<Integer> waitingFuture = executor.submit("lookup", lookup);
+        assertNotSame(cancellingFuture, waitingFuture);
+        assertTrue(cancellingFuture.cancel(true));
+        assertTrue(cancellingFuture.isCancelled());
+        assertThrows(CancellationException.class, cancellingFuture::get);
+        assertFalse(waitingFuture.isDone());
+        assertEquals(1, (int) waitingFuture.get(1, TimeUnit.SECONDS));
+        assertEquals(1, executionCount.get());
+        executor.shutdown();
+    }
+
+    @Test
+    public void givenSharedKeyedTask_whenAllCallersCancel_thenTaskCancelledAndKeyReleased() throws InterruptedException, ExecutionException, TimeoutException {
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(1);
+        final CountDownLatch startedLatch = new CountDownLatch(1);
+        final CountDownLatch interruptedLatch = new CountDownLatch(1);
+        final Callable<Integer> lookup = () -> {
+            startedLatch.countDown();
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                interruptedLatch.countDown();
+                throw e;
+            }
+            return 1;
+        };
+        Future<Integer> firstFuture = executor.submit("lookup", lookup);
+        Future<Integer> secondFuture = executor.submit("lookup", lookup);
+        assertTrue(startedLatch.await(1, TimeUnit.SECONDS));
+        firstFuture.cancel(true);
+        secondFuture.cancel(true);
+        assertTrue(interruptedLatch.await(1, TimeUnit.SECONDS));
+        assertEquals(2, (int) executor.submit("lookup", () -> 2).get(1, TimeUnit.SECONDS));
+        executor.shutdown();
+    }
+
+    @Test
+    public void givenCompletedKey_whenSubmittedWithoutCache_thenTaskRunsAgain() throws InterruptedException, ExecutionException {
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(2);
+        final AtomicInteger executionCount = new AtomicInteger();
+        assertEquals(1, (int) executor.submit("lookup", executionCount::incrementAndGet).get());
+        Thread.sleep(50);
+        assertEquals(2, (int) executor.submit("lookup", executionCount::incrementAndGet).get());
+        executor.shutdown();
+    }
+
+    @Test
+    public void givenResultCache_whenSubmittedAgain_thenCachedResultUntilExpired() throws InterruptedException, ExecutionException {
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(2);
+        executor.enableResultCache(10, 300, TimeUnit.MILLISECONDS);
+        final AtomicInteger executionCount = new AtomicInteger();
+        assertEquals(1, (int) executor.submit("lookup", executionCount::incrementAndGet).get());
+        Thread.sleep(50);
+        Future<Integer> cachedFuture = executor.submit("lookup", executionCount::incrementAndGet);
+        assertTrue(cachedFuture.isDone());
+        assertEquals(1, (int) cachedFuture.get());
+        Thread.sleep(400);
+        assertEquals(2, (int) executor.submit("lookup", executionCount::incrementAndGet).get());
+        executor.shutdown();
+    }
+
+    @Test
+    public void givenFailedTask_whenSubmittedAgain_thenFailureIsNotCached() throws InterruptedException {
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(2);
+        executor.enableResultCache(10, 1, TimeUnit.MINUTES);
+        Future<Integer> failedFuture = executor.submit("lookup", () -> {
+            throw new IllegalStateException("TestException. Something went wrong");
+        });
+        assertThrows(ExecutionException.class, failedFuture::get);
+        Thread.sleep(50);
+        assertNotSame(failedFuture, executor.submit("lookup", () -> 1));
+        executor.shutdown();
+    }
+
+    @Test
+    public void givenSharedKeyedTask_whenSubmissionRejected_thenSharingCallerCancelled() throws InterruptedException {
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(1);
+        executor.enableRateLimit(0.1, 1, SimpleFixedThreadPool.RateLimitMode.BLOCK);
+        executor.submit(() -> 0);
+        final CountDownLatch rejectedLatch = new CountDownLatch(1);
+        Thread submitter = new Thread(() -> {
+            try {
+                executor.submit("lookup", () -> 1);
+            } catch (RejectedExecutionException e) {
+                rejectedLatch.countDown();
+            }
+        });
+        submitter.start();
+        Thread.sleep(100);
+        Future<Integer> sharingFuture = executor.submit("lookup", () -> 2);
+        submitter.interrupt();
+        assertTrue(rejectedLatch.await(1, TimeUnit.SECONDS));
+        assertThrows(CancellationException.class, () -> sharingFuture.get(1, TimeUnit.SECONDS));
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void givenShutdownPool_whenCachedKeySubmitted_thenRejected() throws InterruptedException, ExecutionException {
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(1);
+        executor.enableResultCache(10, 1, TimeUnit.MINUTES);
+        assertEquals(1, (int) executor.submit("lookup", () -> 1).get());
+        Thread.sleep(50);
+        executor.shutdown();
+        assertThrows(RejectedExecutionException.class, () -> executor.submit("lookup", () -> 1));
+    }
+
+    @Test
+    public void givenFullCache_whenNewKeyCached_thenEldestEvicted() {
+        KeyedResultCache cache = new KeyedResultCache(2, 1, TimeUnit.MINUTES);
+        cache.put("first", 1);
+        cache.put("second", 2);
+        cache.put("third", 3);
+        assertEquals(2, cache.size());
+        assertNull(cache.get("first"));
+        assertEquals(3, cache.get("third").getValue());
+    }
+}
@@ -0,0 +1,100 @@
+package edu.ted.executorservice;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+public class ManagedBlockTest {
+
+    @Test
+    public void givenBlockedWorker_whenTaskQueued_thenCompensatingWorkerRunsIt() throws InterruptedException, ExecutionException, TimeoutException {
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(1);
+        final CountDownLatch releaseLatch = new CountDownLatch(1);
+        Future<?> blockingFuture = executor.submit(() -> {
+            SimpleFixedThreadPool.managedBlock(new LatchBlocker(releaseLatch));
+            return null;
+        });
+        Future<Integer> queuedFuture = executor.submit(() -> 42);
+        assertEquals(42, (int) queuedFuture.get(1, TimeUnit.SECONDS));
+        PoolStatistics statistics = executor.getStatistics();
+        assertEquals(1, statistics.getBlockedWorkerCount());
+        assertEquals(1, statistics.getCompensatingWorkerCount());
+        releaseLatch.countDown();
+        blockingFuture.get();
+        Thread.sleep(300);
+        statistics = executor.getStatistics();
+        assertEquals(0, statistics.getBlockedWorkerCount());
+        assertEquals(0, statistics.getCompensatingWorkerCount());
+        executor.shutdown();
+    }
+
+    @Test
+    public void givenCompensationDisabled_whenWorkerBlocked_thenQueuedTaskWaits() throws InterruptedException, ExecutionException {
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(1);
+        executor.setMaxCompensatingWorkers(0);
+        final CountDownLatch releaseLatch = new CountDownLatch(1);
+        executor.submit(() -> {
+            SimpleFixedThreadPool.managedBlock(new LatchBlocker(releaseLatch));
+            return null;
+        });
+        Future<Integer> queuedFuture = executor.submit(() -> 42);
+        assertThrows(TimeoutException.class, () -> queuedFuture.get(200, TimeUnit.MILLISECONDS));
+        releaseLatch.countDown();
+        assertEquals(42, (int) queuedFuture.get());
+        executor.shutdown();
+    }
+
+    @Test
+    public void givenCompensatingWorkerRunningTask_whenShutdown_thenTerminationWaitsForIt() throws InterruptedException, ExecutionException {
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(1);
+        final CountDownLatch releaseLatch = new CountDownLatch(1);
+        final AtomicBoolean isCompensatedTaskDone = new AtomicBoolean();
+        Future<?> blockingFuture = executor.submit(() -> {
+            SimpleFixedThreadPool.managedBlock(new LatchBlocker(releaseLatch));
+            return null;
+        });
+        executor.submit(() -> {
+            releaseLatch.countDown();
+            Thread.sleep(300);
+            isCompensatedTaskDone.set(true);
+            return null;
+        });
+        blockingFuture.get();
+        executor.shutdown();
+        assertFalse(executor.isTerminated());
+        assertTrue(executor.awaitTermination(2, TimeUnit.SECONDS));
+        assertTrue(isCompensatedTaskDone.get());
+        assertTrue(executor.isTerminated());
+    }
+
+    @Test
+    public void givenCallerOutsidePool_whenManagedBlock_thenBlockerRuns() throws InterruptedException {
+        final CountDownLatch releaseLatch = new CountDownLatch(0);
+        SimpleFixedThreadPool.managedBlock(new LatchBlocker(releaseLatch));
+        assertEquals(0, releaseLatch.getCount());
+    }
+
+    private static class LatchBlocker implements SimpleFixedThreadPool.ManagedBlocker {
+        private final CountDownLatch latch;
+
+        private LatchBlocker(CountDownLatch latch) {
+            this.latch = latch;
+        }
+
+        @Override
+        public boolean block() throws InterruptedException {
+            latch.await();
+            return true;
+        }
+
+        @Override
+        public boolean isReleasable() {
+            return latch.getCount() == 0;
+        }
+    }
+}
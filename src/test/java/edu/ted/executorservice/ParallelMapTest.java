@@ -0,0 +1,136 @@
+package edu.ted.executorservice;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+public class ParallelMapTest {
+
+    @Test
+    public void givenOrderedMap_whenTasksFinishOutOfOrder_thenResultsInInputOrder() {
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(4);
+        List<Integer> input = Arrays.asList(5, 1, 4, 2, 3, 0, 6, 7);
+        Iterator<Integer> resultIterator = executor.parallelMap(input.iterator(), num -> {
+            sleep(num * 20);
+            return num * 10;
+        }, 3, true);
+        List<Integer> results = new ArrayList<>();
+        resultIterator.forEachRemaining(results::add);
+        assertEquals(input.stream().map(num -> num * 10).collect(Collectors.toList()), results);
+        executor.shutdown();
+    }
+
+    @Test
+    public void givenUnorderedMap_whenTasksFinishOutOfOrder_thenResultsInCompletionOrder() {
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(2);
+        Iterator<Integer> resultIterator = executor.parallelMap(Arrays.asList(300, 10).iterator(), sleepPeriod -> {
+            sleep(sleepPeriod);
+            return sleepPeriod;
+        }, 2, false);
+        assertEquals(10, (int) resultIterator.next());
+        assertEquals(300, (int) resultIterator.next());
+        assertFalse(resultIterator.hasNext());
+        executor.shutdown();
+    }
+
+    @Test
+    public void givenLargeSource_whenMapped_thenInFlightWindowIsBounded() {
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(4);
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxObservedInFlight = new AtomicInteger();
+        long sum = executor.parallelMap(IntStream.range(0, 200).boxed(), num -> {
+            maxObservedInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            sleep(1);
+            inFlight.decrementAndGet();
+            return (long) num;
+        }, 3, false).mapToLong(Long::longValue).sum();
+        assertEquals(199 * 200 / 2, sum);
+        assertTrue(maxObservedInFlight.get() <= 3);
+        executor.shutdown();
+    }
+
+    @Test
+    public void givenEmptySource_whenMapped_thenNoResults() {
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(1);
+        assertEquals(0, executor.parallelMap(Stream.empty(), Object::toString, 1, true).count());
+        assertFalse(executor.parallelMap(Collections.emptyIterator(), Object::toString, 1, false).hasNext());
+        executor.shutdown();
+    }
+
+    @Test
+    public void givenFailingMapper_whenNext_thenCompletionException() {
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(2);
+        Iterator<Integer> resultIterator = executor.parallelMap(Arrays.asList(1, 0).iterator(), num -> 10 / num, 2, true);
+        assertEquals(10, (int) resultIterator.next());
+        CompletionException exception = assertThrows(CompletionException.class, resultIterator::next);
+        assertTrue(exception.getCause() instanceof ArithmeticException);
+        executor.shutdown();
+    }
+
+    @Test
+    public void givenTasksInFlight_whenIteratorClosed_thenTasksCancelled() throws Exception {
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(1);
+        final CountDownLatch startedLatch = new CountDownLatch(1);
+        final CountDownLatch interruptedLatch = new CountDownLatch(1);
+        SimpleFixedThreadPool.CloseableIterator<Integer> resultIterator = executor.parallelMap(IntStream.range(0, 10).iterator(), num -> {
+            startedLatch.countDown();
+            try {
+                new CountDownLatch(1).await();
+            } catch (InterruptedException e) {
+                interruptedLatch.countDown();
+            }
+            return num;
+        }, 3, true);
+        assertTrue(resultIterator.hasNext());
+        assertTrue(startedLatch.await(1, TimeUnit.SECONDS));
+        assertEquals(2, executor.getStatistics().getQueuedTaskCount());
+        resultIterator.close();
+        assertEquals(0, executor.getStatistics().getQueuedTaskCount());
+        assertTrue(interruptedLatch.await(1, TimeUnit.SECONDS));
+        assertFalse(resultIterator.hasNext());
+        assertEquals(1, (int) executor.submit(() -> 1).get(1, TimeUnit.SECONDS));
+        executor.shutdown();
+    }
+
+    @Test
+    public void givenTasksInFlight_whenStreamClosed_thenTasksCancelledAndSourceClosed() throws Exception {
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(1);
+        final AtomicInteger sourceCloseCount = new AtomicInteger();
+        Stream<Integer> source = IntStream.range(0, 10).boxed().onClose(sourceCloseCount::incrementAndGet);
+        Stream<Integer> results = executor.parallelMap(source, num -> {
+            if (num > 0) {
+                sleep(TimeUnit.MINUTES.toMillis(1));
+            }
+            return num;
+        }, 3, false);
+        assertTrue(results.iterator().hasNext());
+        results.close();
+        assertEquals(0, executor.getStatistics().getQueuedTaskCount());
+        assertEquals(1, sourceCloseCount.get());
+        assertEquals(1, (int) executor.submit(() -> 1).get(1, TimeUnit.SECONDS));
+        executor.shutdown();
+    }
+
+    private static void sleep(long period) {
+        try {
+            Thread.sleep(period);
+        } catch (InterruptedException e) {
+            log.debug("Interrupted: ", e);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package edu.ted.executorservice;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+@Slf4j
+public class PartitionedThreadPoolTest {
+
+    @Test
+    public void givenOnePerCpuPlacement_whenTaskRuns_thenWorkerIsPinnedToItsCpu() throws InterruptedException, ExecutionException {
+        assumeTrue(WorkerPlacement.isSupported(), "CPU affinity is only supported on Linux with taskset");
+        int cpu = WorkerPlacement.perSocket().get(0).getCpus()[0];
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(1);
+        executor.setWorkerPlacement(WorkerPlacement.onePerCpu(cpu));
+        Future<String> allowedCpus = executor.submit(PartitionedThreadPoolTest::readAllowedCpus);
+        assertEquals(Integer.toString(cpu), allowedCpus.get());
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void givenUnavailableCpu_whenTaskSubmitted_thenWorkerRunsUnpinned() throws InterruptedException, ExecutionException {
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(1);
+        executor.setWorkerPlacement(WorkerPlacement.anyOf(100_000));
+        assertEquals(Integer.valueOf(1), executor.submit(() -> 1).get());
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void givenStartedWorkers_whenPlacementSet_thenIllegalStateException() throws InterruptedException, ExecutionException {
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(1);
+        executor.submit(() -> 1).get();
+        assertThrows(IllegalStateException.class, () -> executor.setWorkerPlacement(WorkerPlacement.anyOf(0)));
+        assertThrows(IllegalArgumentException.class, () -> WorkerPlacement.anyOf());
+        assertThrows(IllegalArgumentException.class, () -> WorkerPlacement.onePerCpu(-1));
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void givenOnePerCpuPlacement_whenWorkerCpusRequested_thenCpusAssignedRoundRobin() {
+        WorkerPlacement placement = WorkerPlacement.onePerCpu(2, 3);
+        assertArrayEquals(new int[]{2}, placement.getWorkerCpus(0));
+        assertArrayEquals(new int[]{3}, placement.getWorkerCpus(1));
+        assertArrayEquals(new int[]{2}, placement.getWorkerCpus(2));
+        assertArrayEquals(new int[]{2, 3}, placement.getWorkerCpus(-1));
+        assertArrayEquals(new int[]{2, 3}, WorkerPlacement.anyOf(2, 3).getWorkerCpus(1));
+    }
+
+    @Test
+    public void givenPerSocketPool_whenTasksSubmitted_thenAllCompleted() throws InterruptedException, ExecutionException {
+        final PartitionedThreadPool executor = PartitionedThreadPool.perSocket(2);
+        assertEquals(WorkerPlacement.perSocket().size(), executor.getPartitionCount());
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            final int value = i;
+            futures.add(executor.submit(() -> value));
+        }
+        for (int i = 0; i < 50; i++) {
+            assertEquals(Integer.valueOf(i), futures.get(i).get());
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+        assertTrue(executor.isTerminated());
+    }
+
+    @Test
+    public void givenIdlePartitions_whenTasksSubmitted_thenPartitionsTakeTurns() throws InterruptedException, ExecutionException {
+        final PartitionedThreadPool executor = new PartitionedThreadPool(1, Arrays.asList(WorkerPlacement.anyOf(0), WorkerPlacement.anyOf(0)));
+        final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        for (int i = 0; i < 4; i++) {
+            executor.submit(() -> threads.add(Thread.currentThread())).get();
+        }
+        assertEquals(2, threads.size());
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void givenTaskSubmittedFromPartitionWorker_whenRouted_thenStaysInSamePartition() throws InterruptedException, ExecutionException {
+        final PartitionedThreadPool executor = new PartitionedThreadPool(2, Arrays.asList(WorkerPlacement.anyOf(0), WorkerPlacement.anyOf(0)));
+        for (int i = 0; i < 10; i++) {
+            Future<Boolean> isSamePartition = executor.submit(() -> {
+                SimpleFixedThreadPool parentPartition = SimpleFixedThreadPool.currentPool();
+                return executor.submit(() -> SimpleFixedThreadPool.currentPool() == parentPartition).get();
+            });
+            assertTrue(isSamePartition.get());
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void givenBusyPartitions_whenShutdownNow_thenQueuedTasksOfAllPartitionsReturned() throws InterruptedException {
+        final PartitionedThreadPool executor = new PartitionedThreadPool(1, Arrays.asList(WorkerPlacement.anyOf(0), WorkerPlacement.anyOf(0)));
+        final CountDownLatch started = new CountDownLatch(2);
+        for (int i = 0; i < 2; i++) {
+            executor.execute(() -> {
+                started.countDown();
+                try {
+                    Thread.sleep(10_000);
+                } catch (InterruptedException e) {
+                    log.debug("Interrupted: ", e);
+                }
+            });
+        }
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        for (int i = 0; i < 6; i++) {
+            executor.execute(() -> log.debug("Queued task"));
+        }
+        assertEquals(3, executor.getPartition(0).getStatistics().getQueuedTaskCount());
+        assertEquals(6, executor.shutdownNow().size());
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+        assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> log.debug("Rejected task")));
+    }
+
+    private static String readAllowedCpus() throws IOException {
+        for (String line : Files.readAllLines(Paths.get("/proc/thread-self/status"))) {
+            if (line.startsWith("Cpus_allowed_list:")) {
+                return line.substring("Cpus_allowed_list:".length()).trim();
+            }
+        }
+        return "";
+    }
+}
@@ -0,0 +1,105 @@
+package edu.ted.executorservice;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+public class RateLimitTest {
+
+    @Test
+    public void givenQueueMode_whenTasksSubmitted_thenReleasedAtRateAfterBurst() throws InterruptedException, ExecutionException {
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(4);
+        executor.enableRateLimit(20, 2, SimpleFixedThreadPool.RateLimitMode.QUEUE);
+        long startNanos = System.nanoTime();
+        List<Future<Long>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(executor.submit(System::nanoTime));
+        }
+        long submitMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        assertTrue(submitMillis < 100);
+        assertTrue(executor.getRateLimitedTaskCount() > 0);
+        List<Long> startMillis = new ArrayList<>();
+        for (Future<Long> future : futures) {
+            startMillis.add(TimeUnit.NANOSECONDS.toMillis(future.get() - startNanos));
+        }
+        assertTrue(startMillis.get(1) < 100);
+        assertTrue(startMillis.get(9) >= 350);
+        assertEquals(0, executor.getRateLimitedTaskCount());
+        executor.shutdown();
+    }
+
+    @Test
+    public void givenBlockMode_whenBurstExhausted_thenSubmitBlocks() {
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(2);
+        executor.enableRateLimit(10, 1, SimpleFixedThreadPool.RateLimitMode.BLOCK);
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < 4; i++) {
+            executor.submit(() -> 1);
+        }
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos) >= 250);
+        executor.shutdown();
+    }
+
+    @Test
+    public void givenRejectMode_whenBurstExhausted_thenSubmitRejected() throws InterruptedException, ExecutionException {
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(2);
+        executor.enableRateLimit(1, 2, SimpleFixedThreadPool.RateLimitMode.REJECT);
+        Future<Integer> firstFuture = executor.submit(() -> 1);
+        Future<Integer> secondFuture = executor.submit(() -> 2);
+        assertThrows(RejectedExecutionException.class, () -> executor.submit(() -> 3));
+        assertEquals(1, (int) firstFuture.get());
+        assertEquals(2, (int) secondFuture.get());
+        executor.shutdown();
+    }
+
+    @Test
+    public void givenHeldTasks_whenShutdownNow_thenHeldTasksReturned() {
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(1);
+        executor.enableRateLimit(1, 1, SimpleFixedThreadPool.RateLimitMode.QUEUE);
+        for (int i = 0; i < 5; i++) {
+            executor.submit(() -> 1);
+        }
+        List<Runnable> notStartedTasks = executor.shutdownNow();
+        assertTrue(notStartedTasks.size() >= 3);
+    }
+
+    @Test
+    public void givenHeldTasks_whenShutdown_thenHeldTasksCancelled() throws InterruptedException, ExecutionException {
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(1);
+        executor.enableRateLimit(1, 1, SimpleFixedThreadPool.RateLimitMode.QUEUE);
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(executor.submit(() -> 1));
+        }
+        assertEquals(1, (int) futures.get(0).get());
+        executor.shutdown();
+        int cancelledCount = 0;
+        for (Future<Integer> future : futures) {
+            try {
+                assertEquals(1, (int) future.get(1, TimeUnit.SECONDS));
+            } catch (CancellationException e) {
+                cancelledCount++;
+            } catch (TimeoutException e) {
+                fail("Held task is neither run nor cancelled");
+            }
+        }
+        assertTrue(cancelledCount >= 3);
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void givenInvalidRate_whenEnableRateLimit_thenIllegalArgumentException() {
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(1);
+        assertThrows(IllegalArgumentException.class, () -> executor.enableRateLimit(0, 1, SimpleFixedThreadPool.RateLimitMode.QUEUE));
+        assertThrows(IllegalArgumentException.class, () -> executor.enableRateLimit(1, 0, SimpleFixedThreadPool.RateLimitMode.QUEUE));
+        executor.enableRateLimit(1, 1, SimpleFixedThreadPool.RateLimitMode.REJECT);
+        assertThrows(IllegalStateException.class, () -> executor.enableRateLimit(1, 1, SimpleFixedThreadPool.RateLimitMode.REJECT));
+        executor.shutdown();
+    }
+}
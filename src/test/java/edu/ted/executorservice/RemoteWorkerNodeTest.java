@@ -0,0 +1,324 @@
+package edu.ted.executorservice;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+public class RemoteWorkerNodeTest {
+
+    private static final String SECRET = "remote worker node test secret";
+    private static final List<String> ALLOWED_CLASSES = Collections.singletonList("edu.ted.executorservice.");
+    private static final AtomicBoolean UNAUTHENTICATED_TASK_EXECUTED = new AtomicBoolean();
+
+    @Test
+    public void givenConnectedNode_whenRemoteTaskSubmitted_thenResultReturned() throws Exception {
+        try (RemoteWorkerNode node = startNode()) {
+            final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(1);
+            connect(executor, node.getPort());
+            Future<Integer> future = executor.submitRemote((Callable<Integer> & Serializable) () -> 6 * 7);
+            assertEquals(42, (int) future.get(5, TimeUnit.SECONDS));
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void givenRemoteFuture_whenRunLocally_thenNothingHappensAndRemoteResultReturned() throws Exception {
+        try (RemoteWorkerNode node = startNode()) {
+            final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(1);
+            connect(executor, node.getPort());
+            Future<Integer> future = executor.submitRemote((Callable<Integer> & Serializable) () -> {
+                Thread.sleep(100);
+                return 6 * 7;
+            });
+            assertDoesNotThrow(() -> ((RunnableFuture<?>) future).run());
+            assertEquals(42, (int) future.get(5, TimeUnit.SECONDS));
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void givenFailingRemoteTask_whenGet_thenRemoteExceptionIsCause() throws Exception {
+        try (RemoteWorkerNode node = startNode()) {
+            final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(1);
+            connect(executor, node.getPort());
+            Future<Integer> future = executor.submitRemote((Callable<Integer> & Serializable) () -> {
+                throw new IllegalStateException("remote failure");
+            });
+            ExecutionException exception = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+            assertTrue(exception.getCause() instanceof IllegalStateException);
+            assertEquals("remote failure", exception.getCause().getMessage());
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void givenTwoNodes_whenManyTasksSubmitted_thenBothNodesExecuteTasks() throws Exception {
+        try (RemoteWorkerNode firstNode = startNode(); RemoteWorkerNode secondNode = startNode()) {
+            final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(1);
+            connect(executor, firstNode.getPort());
+            connect(executor, secondNode.getPort());
+            Thread.sleep(200);
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                final int value = i;
+                futures.add(executor.submitRemote((Callable<Integer> & Serializable) () -> {
+                    Thread.sleep(20);
+                    return value;
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                assertEquals(i, (int) futures.get(i).get(5, TimeUnit.SECONDS));
+            }
+            assertTrue(firstNode.getCompletedTaskCount() > 0);
+            assertTrue(secondNode.getCompletedTaskCount() > 0);
+            assertEquals(40, firstNode.getCompletedTaskCount() + secondNode.getCompletedTaskCount());
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void givenNotSerializableTask_whenSubmitRemote_thenIllegalArgumentException() throws Exception {
+        try (RemoteWorkerNode node = startNode()) {
+            final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(1);
+            connect(executor, node.getPort());
+            assertThrows(IllegalArgumentException.class, () -> executor.submitRemote(() -> 1));
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void givenNoConnectedNode_whenSubmitRemote_thenIllegalStateException() {
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(1);
+        assertThrows(IllegalStateException.class, () -> executor.submitRemote((Callable<Integer> & Serializable) () -> 1));
+        executor.shutdown();
+    }
+
+    @Test
+    public void givenNodeInSeparateProcess_whenRemoteTaskSubmitted_thenExecutedInThatProcess() throws Exception {
+        String javaExecutable = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        int port = findFreePort();
+        ProcessBuilder processBuilder = new ProcessBuilder(javaExecutable, "-cp", System.getProperty("java.class.path"),
+                RemoteWorkerNode.class.getName(), Integer.toString(port), "2")
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.INHERIT);
+        processBuilder.environment().put(RemoteWorkerNode.SECRET_VARIABLE, SECRET);
+        processBuilder.environment().put(RemoteWorkerNode.ALLOWED_CLASSES_VARIABLE, "edu.ted.executorservice.");
+        Process process = processBuilder.start();
+        try {
+            awaitListening(port, process);
+            final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(1);
+            connect(executor, port);
+            Future<String> future = executor.submitRemote(
+                    (Callable<String> & Serializable) () -> java.lang.management.ManagementFactory.getRuntimeMXBean().getName());
+            String remoteRuntimeName = future.get(10, TimeUnit.SECONDS);
+            assertNotEquals(java.lang.management.ManagementFactory.getRuntimeMXBean().getName(), remoteRuntimeName);
+            executor.shutdown();
+        } finally {
+            process.destroy();
+            process.waitFor(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void givenNodeClosed_whenTaskInFlight_thenFutureFailsWithIOException() throws Exception {
+        RemoteWorkerNode node = startNode();
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(1);
+        connect(executor, node.getPort());
+        Future<Integer> future = executor.submitRemote((Callable<Integer> & Serializable) () -> {
+            Thread.sleep(2000);
+            return 1;
+        });
+        Thread.sleep(300);
+        node.close();
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertTrue(exception.getCause() instanceof IOException);
+        executor.shutdown();
+    }
+
+    @Test
+    public void givenWrongSecret_whenRemoteTaskSubmitted_thenFutureFailsAndTaskNotExecuted() throws Exception {
+        try (RemoteWorkerNode node = startNode()) {
+            final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(1);
+            executor.connectRemoteNode(loopbackAddress(node.getPort()), "a different shared secret".getBytes(StandardCharsets.UTF_8), ALLOWED_CLASSES);
+            Future<Integer> future = executor.submitRemote((Callable<Integer> & Serializable) () -> 1);
+            ExecutionException exception = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+            assertTrue(exception.getCause() instanceof IOException);
+            assertEquals(0, node.getCompletedTaskCount());
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void givenShortSecret_whenNodeCreated_thenIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> new RemoteWorkerNode(loopbackAddress(0), 1,
+                "short".getBytes(StandardCharsets.UTF_8), ALLOWED_CLASSES));
+    }
+
+    @Test
+    public void givenUnauthenticatedPeer_whenTasksFrameSent_thenConnectionClosedAndTaskNotExecuted() throws Exception {
+        try (RemoteWorkerNode node = startNode(); Socket socket = new Socket(InetAddress.getLoopbackAddress(), node.getPort())) {
+            socket.setSoTimeout(5000);
+            byte[] payload = RemoteConnection.serialize((Callable<Boolean> & Serializable) () -> UNAUTHENTICATED_TASK_EXECUTED.getAndSet(true));
+            DataOutputStream output = new DataOutputStream(socket.getOutputStream());
+            output.writeInt(Byte.BYTES + Integer.BYTES + Long.BYTES + Byte.BYTES + Integer.BYTES + payload.length);
+            output.writeByte(RemoteConnection.TASKS);
+            output.writeInt(1);
+            output.writeLong(1);
+            output.writeByte(0);
+            output.writeInt(payload.length);
+            output.write(payload);
+            output.flush();
+            InputStream input = socket.getInputStream();
+            byte[] buffer = new byte[1024];
+            while (input.read(buffer) >= 0) {
+                log.debug("Challenge is ignored");
+            }
+            Thread.sleep(100);
+            assertFalse(UNAUTHENTICATED_TASK_EXECUTED.get());
+            assertEquals(0, node.getCompletedTaskCount());
+        }
+    }
+
+    @Test
+    public void givenMalformedFrames_whenReceived_thenOnlyThatConnectionClosed() throws Exception {
+        try (RemoteWorkerNode node = startNode()) {
+            //message count far beyond the frame length
+            assertConnectionClosedAfter(node, frame(RemoteConnection.TASKS, Integer.MAX_VALUE, new byte[0]));
+            //negative payload length
+            assertConnectionClosedAfter(node, frame(RemoteConnection.TASKS, 1, message(-1, new byte[0])));
+            //payload length past the end of the frame
+            assertConnectionClosedAfter(node, frame(RemoteConnection.TASKS, 1, message(1000, new byte[4])));
+            //trailing bytes after the last message
+            assertConnectionClosedAfter(node, frame(RemoteConnection.AUTH, 1, concat(message(2, new byte[2]), new byte[3])));
+            final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(1);
+            connect(executor, node.getPort());
+            Future<Integer> future = executor.submitRemote((Callable<Integer> & Serializable) () -> 6 * 7);
+            assertEquals(42, (int) future.get(5, TimeUnit.SECONDS));
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void givenTaskClassNotAllowed_whenRemoteTaskSubmitted_thenFailsWithInvalidClassException() throws Exception {
+        try (RemoteWorkerNode node = new RemoteWorkerNode(loopbackAddress(0), 1, SECRET.getBytes(StandardCharsets.UTF_8), Collections.emptyList())) {
+            node.start();
+            final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(1);
+            connect(executor, node.getPort());
+            Future<Integer> future = executor.submitRemote((Callable<Integer> & Serializable) () -> 1);
+            ExecutionException exception = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+            assertTrue(exception.getCause() instanceof InvalidClassException);
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void givenClassFilter_whenClassChecked_thenOnlyDefaultAndAllowedClassesPass() {
+        RemoteClassFilter classFilter = new RemoteClassFilter(Collections.singletonList("com.example."));
+        assertTrue(classFilter.isAllowed("java.lang.Integer"));
+        assertTrue(classFilter.isAllowed("[Ljava.lang.String;"));
+        assertTrue(classFilter.isAllowed("[[I"));
+        assertTrue(classFilter.isAllowed("java.lang.invoke.SerializedLambda"));
+        assertTrue(classFilter.isAllowed("com.example.task.MyTask"));
+        assertFalse(classFilter.isAllowed("java.lang.reflect.Proxy"));
+        assertFalse(classFilter.isAllowed("org.apache.commons.collections.functors.InvokerTransformer"));
+        assertFalse(classFilter.isAllowed("[Lcom.sun.rowset.JdbcRowSetImpl;"));
+        assertFalse(classFilter.isAllowed("com.examples.Other"));
+    }
+
+    private static RemoteWorkerNode startNode() throws IOException {
+        RemoteWorkerNode node = new RemoteWorkerNode(loopbackAddress(0), 2, SECRET.getBytes(StandardCharsets.UTF_8), ALLOWED_CLASSES);
+        node.start();
+        return node;
+    }
+
+    private static void connect(SimpleFixedThreadPool executor, int port) throws IOException {
+        executor.connectRemoteNode(loopbackAddress(port), SECRET.getBytes(StandardCharsets.UTF_8), ALLOWED_CLASSES);
+    }
+
+    private static InetSocketAddress loopbackAddress(int port) {
+        return new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+    }
+
+    private static void assertConnectionClosedAfter(RemoteWorkerNode node, byte[] frame) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), node.getPort())) {
+            socket.setSoTimeout(5000);
+            socket.getOutputStream().write(frame);
+            socket.getOutputStream().flush();
+            InputStream input = socket.getInputStream();
+            byte[] buffer = new byte[1024];
+            while (input.read(buffer) >= 0) {
+                log.debug("Challenge is ignored");
+            }
+        }
+    }
+
+    private static byte[] frame(byte type, int count, byte[] content) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        try {
+            output.writeInt(Byte.BYTES + Integer.BYTES + content.length);
+            output.writeByte(type);
+            output.writeInt(count);
+            output.write(content);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] message(int declaredPayloadLength, byte[] payload) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        try {
+            output.writeLong(1);
+            output.writeByte(0);
+            output.writeInt(declaredPayloadLength);
+            output.write(payload);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] result = java.util.Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+
+    private static int findFreePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static void awaitListening(int port, Process process) throws IOException, InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() - deadline < 0) {
+            if (!process.isAlive()) {
+                throw new IOException("Remote node process exited before listening");
+            }
+            try {
+                new Socket(InetAddress.getLoopbackAddress(), port).close();
+                return;
+            } catch (IOException e) {
+                Thread.sleep(50);
+            }
+        }
+        throw new IOException("Remote node process is not listening on port " + port);
+    }
+}
@@ -0,0 +1,125 @@
+package edu.ted.executorservice;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+public class SharedWorkerGroupTest {
+
+    @Test
+    public void givenTwoExecutors_whenTasksSubmitted_thenSharedWorkersRunThem() throws InterruptedException, ExecutionException {
+        final SharedWorkerGroup group = new SharedWorkerGroup(2);
+        ExecutorService firstExecutor = group.newExecutor("first", 1, 100);
+        ExecutorService secondExecutor = group.newExecutor("second", 1, 100);
+        final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            futures.add(firstExecutor.submit(() -> threads.add(Thread.currentThread())));
+            futures.add(secondExecutor.submit(() -> threads.add(Thread.currentThread())));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        assertTrue(threads.size() <= 2);
+        assertEquals(2, group.getExecutorStatistics().size());
+        assertEquals(20, group.getExecutorStatistics().get("first").getDispatchedTaskCount());
+        group.shutdown();
+        assertTrue(group.awaitTermination(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void givenSaturatedExecutor_whenOtherExecutorSubmits_thenOtherTaskNotStarved() throws InterruptedException, ExecutionException, TimeoutException {
+        final SharedWorkerGroup group = new SharedWorkerGroup(1);
+        ExecutorService busyExecutor = group.newExecutor("busy", 1, 1000);
+        ExecutorService quietExecutor = group.newExecutor("quiet", 1, 10);
+        for (int i = 0; i < 50; i++) {
+            busyExecutor.submit(() -> {
+                Thread.sleep(10);
+                return null;
+            });
+        }
+        Future<Integer> quietFuture = quietExecutor.submit(() -> 42);
+        assertEquals(42, (int) quietFuture.get(200, TimeUnit.MILLISECONDS));
+        group.shutdownNow();
+    }
+
+    @Test
+    public void givenExecutorShutdown_whenOtherExecutorSubmits_thenOnlyShutdownExecutorRejects() throws InterruptedException, ExecutionException {
+        final SharedWorkerGroup group = new SharedWorkerGroup(2);
+        ExecutorService firstExecutor = group.newExecutor("first", 1, 100);
+        ExecutorService secondExecutor = group.newExecutor("second", 1, 100);
+        Future<Integer> pendingFuture = firstExecutor.submit(() -> {
+            Thread.sleep(100);
+            return 1;
+        });
+        firstExecutor.shutdown();
+        assertTrue(firstExecutor.isShutdown());
+        assertFalse(firstExecutor.isTerminated());
+        assertThrows(RejectedExecutionException.class, () -> firstExecutor.submit(() -> 2));
+        assertEquals(3, (int) secondExecutor.submit(() -> 3).get());
+        assertEquals(1, (int) pendingFuture.get());
+        assertTrue(firstExecutor.awaitTermination(1, TimeUnit.SECONDS));
+        assertFalse(secondExecutor.isShutdown());
+        assertFalse(group.isTerminated());
+        group.shutdown();
+        assertTrue(group.awaitTermination(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void givenExecutorShutdownNow_whenTasksQueued_thenQueuedReturnedAndWorkersKeepServingOthers() throws InterruptedException, ExecutionException {
+        final SharedWorkerGroup group = new SharedWorkerGroup(1);
+        ExecutorService firstExecutor = group.newExecutor("first", 1, 100);
+        ExecutorService secondExecutor = group.newExecutor("second", 1, 100);
+        final CountDownLatch startedLatch = new CountDownLatch(1);
+        Future<?> runningFuture = firstExecutor.submit(() -> {
+            startedLatch.countDown();
+            Thread.sleep(10_000);
+            return null;
+        });
+        startedLatch.await();
+        for (int i = 0; i < 3; i++) {
+            firstExecutor.submit(() -> 1);
+        }
+        List<Runnable> notStartedTasks = firstExecutor.shutdownNow();
+        assertEquals(3, notStartedTasks.size());
+        assertTrue(runningFuture.isCancelled());
+        assertTrue(firstExecutor.awaitTermination(1, TimeUnit.SECONDS));
+        assertEquals(5, (int) secondExecutor.submit(() -> 5).get());
+        group.shutdown();
+        assertTrue(group.awaitTermination(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void givenExecutorQueueBound_whenExceeded_thenSubmitRejected() throws InterruptedException {
+        final SharedWorkerGroup group = new SharedWorkerGroup(1);
+        ExecutorService executor = group.newExecutor("bounded", 1, 2);
+        final CountDownLatch startedLatch = new CountDownLatch(1);
+        final CountDownLatch blockingLatch = new CountDownLatch(1);
+        executor.submit(() -> {
+            startedLatch.countDown();
+            blockingLatch.await();
+            return null;
+        });
+        startedLatch.await();
+        executor.submit(() -> 1);
+        executor.submit(() -> 2);
+        assertThrows(RejectedExecutionException.class, () -> executor.submit(() -> 3));
+        blockingLatch.countDown();
+        group.shutdownNow();
+    }
+
+    @Test
+    public void givenGroupShutdown_whenNewExecutor_thenIllegalStateException() {
+        final SharedWorkerGroup group = new SharedWorkerGroup(1);
+        group.shutdown();
+        assertTrue(group.isTerminated());
+        assertThrows(IllegalStateException.class, () -> group.newExecutor("late", 1, 1));
+    }
+}
@@ -0,0 +1,63 @@
+package edu.ted.executorservice;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+public class SimpleCompletionServiceTest {
+
+    @Test
+    public void givenTasksOfDifferentLength_whenTaken_thenInCompletionOrder() throws InterruptedException, ExecutionException {
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(3);
+        SimpleCompletionService<Integer> completionService = executor.newCompletionService();
+        completionService.submit(() -> sleepAndReturn(300));
+        completionService.submit(() -> sleepAndReturn(100));
+        completionService.submit(() -> sleepAndReturn(200));
+        assertEquals(100, (int) completionService.take().get());
+        assertEquals(200, (int) completionService.take().get());
+        assertEquals(300, (int) completionService.take().get());
+        assertNull(completionService.poll());
+        executor.shutdown();
+    }
+
+    @Test
+    public void givenSubmittedTasks_whenIterated_thenEveryFutureReturnedOnce() throws InterruptedException, ExecutionException {
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(4);
+        SimpleCompletionService<Integer> completionService = executor.newCompletionService();
+        for (int i = 0; i < 10; i++) {
+            final int num = i;
+            completionService.submit(() -> sleepAndReturn(num * 10));
+        }
+        List<Integer> results = new ArrayList<>();
+        for (Future<Integer> future : completionService) {
+            assertTrue(future.isDone());
+            results.add(future.get());
+        }
+        assertEquals(10, results.size());
+        assertEquals(0, completionService.getPendingCount());
+        executor.shutdown();
+    }
+
+    @Test
+    public void givenRunningTask_whenPolledWithTimeout_thenNullUntilCompleted() throws InterruptedException {
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(1);
+        SimpleCompletionService<Integer> completionService = executor.newCompletionService();
+        completionService.submit(() -> sleepAndReturn(300));
+        assertNull(completionService.poll(50, TimeUnit.MILLISECONDS));
+        assertNotNull(completionService.poll(1, TimeUnit.SECONDS));
+        executor.shutdown();
+    }
+
+    private static int sleepAndReturn(int period) throws InterruptedException {
+        Thread.sleep(period);
+        return period;
+    }
+}
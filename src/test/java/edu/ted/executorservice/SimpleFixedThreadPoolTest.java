@@ -3,6 +3,8 @@ package edu.ted.executorservice;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.Test;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.*;
@@ -103,4 +105,152 @@ public class SimpleFixedThreadPoolTest {
             assertTrue(resultMap.containsKey(i));
         }
     }
+
+    @Test
+    public void givenTaskWeigher_whenTasksQueued_thenStatisticsReportQueuedWeight() throws InterruptedException {
+        final CountDownLatch blockingLatch = new CountDownLatch(1);
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(1, 100, SimpleFixedThreadPoolTest::weigh);
+        executor.submit(() -> {
+            try {
+                blockingLatch.await();
+            } catch (InterruptedException e) {
+                log.debug("Interrupted: ", e);
+            }
+        });
+        Thread.sleep(100);
+        executor.submit(new WeightedTask(30));
+        executor.submit(new WeightedTask(45));
+        PoolStatistics statistics = executor.getStatistics();
+        assertEquals(2, statistics.getQueuedTaskCount());
+        assertEquals(75, statistics.getQueuedTaskWeight());
+        blockingLatch.countDown();
+        executor.shutdown();
+    }
+
+    @Test
+    public void givenTaskWeigher_whenParallelMapTasksQueued_thenSourceElementsWeighed() throws InterruptedException {
+        final CountDownLatch blockingLatch = new CountDownLatch(1);
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(1, 100, task -> task instanceof Integer ? (Integer) task : 1);
+        executor.submit(() -> {
+            try {
+                blockingLatch.await();
+            } catch (InterruptedException e) {
+                log.debug("Interrupted: ", e);
+            }
+        });
+        Thread.sleep(100);
+        Iterator<Integer> results = executor.parallelMap(Arrays.asList(30, 45).iterator(), value -> value, 2, true);
+        assertTrue(results.hasNext());
+        assertEquals(75, executor.getStatistics().getQueuedTaskWeight());
+        blockingLatch.countDown();
+        executor.shutdown();
+    }
+
+    @Test
+    public void givenQueueStatisticsEnabled_whenTasksRun_thenQueueStatisticsReported() throws InterruptedException, ExecutionException {
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(2);
+        executor.enableQueueStatistics();
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            final int value = i;
+            futures.add(executor.submit(() -> value));
+        }
+        for (Future<Integer> future : futures) {
+            future.get();
+        }
+        PoolStatistics poolStatistics = executor.getStatistics();
+        QueueStatistics statistics = poolStatistics.getQueueStatistics();
+        assertTrue(statistics.getLockAcquireCount() >= 2 * statistics.getReadSignalCount());
+        assertEquals(100, statistics.getReadSignalCount() + poolStatistics.getHandedOffTaskCount());
+        assertTrue(statistics.getContendedLockAcquireCount() <= statistics.getLockAcquireCount());
+        executor.shutdown();
+    }
+
+    @Test
+    public void givenInjectedQueue_whenTasksSubmitted_thenWorkersTakeFromIt() throws InterruptedException, ExecutionException {
+        final BlockingQueue<Runnable> injectedQueue = new LinkedBlockingQueue<>();
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(2, injectedQueue);
+        final CountDownLatch blockingLatch = new CountDownLatch(2);
+        for (int i = 0; i < 2; i++) {
+            executor.submit(() -> {
+                blockingLatch.countDown();
+                blockingLatch.await();
+                return null;
+            });
+        }
+        Future<Integer> queuedFuture = executor.submit(() -> 42);
+        assertEquals(42, (int) queuedFuture.get());
+        assertTrue(injectedQueue.isEmpty());
+        assertThrows(IllegalStateException.class, executor::enableQueueStatistics);
+        executor.shutdown();
+    }
+
+    @Test
+    public void givenBoundedInjectedQueue_whenShutdownNow_thenQueuedTasksReturned() throws InterruptedException {
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(1, new ArrayBlockingQueue<>(10));
+        final CountDownLatch startedLatch = new CountDownLatch(1);
+        executor.submit(() -> {
+            startedLatch.countDown();
+            Thread.sleep(10_000);
+            return null;
+        });
+        startedLatch.await();
+        for (int i = 0; i < 3; i++) {
+            executor.submit(() -> 1);
+        }
+        assertEquals(3, executor.getStatistics().getQueuedTaskCount());
+        assertEquals(3, executor.shutdownNow().size());
+    }
+
+    @Test
+    public void givenIdleWorkers_whenTasksSubmitted_thenHandedOffBypassingQueue() throws InterruptedException, ExecutionException {
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(2);
+        executor.submit(() -> 0).get();
+        executor.submit(() -> 0).get();
+        Thread.sleep(100);
+        for (int i = 0; i < 10; i++) {
+            final int value = i;
+            assertEquals(value, (int) executor.submit(() -> value).get());
+        }
+        assertTrue(executor.getStatistics().getHandedOffTaskCount() >= 10);
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void givenConcurrentSubmitters_whenWorkersGoIdle_thenNoTaskIsMissed() throws InterruptedException, ExecutionException, TimeoutException {
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(3);
+        final ExecutorService submitters = Executors.newFixedThreadPool(4);
+        List<Future<?>> submitterFutures = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            submitterFutures.add(submitters.submit(() -> {
+                for (int j = 0; j < 2000; j++) {
+                    final int value = j;
+                    assertEquals(value, (int) executor.submit(() -> value).get(1, TimeUnit.SECONDS));
+                }
+                return null;
+            }));
+        }
+        for (Future<?> submitterFuture : submitterFutures) {
+            submitterFuture.get(30, TimeUnit.SECONDS);
+        }
+        submitters.shutdown();
+        executor.shutdown();
+    }
+
+    private static long weigh(Object task) {
+        return task instanceof WeightedTask ? ((WeightedTask) task).weight : 1;
+    }
+
+    private static class WeightedTask implements Runnable {
+        private final long weight;
+
+        private WeightedTask(long weight) {
+            this.weight = weight;
+        }
+
+        @Override
+        public void run() {
+        }
+    }
 }
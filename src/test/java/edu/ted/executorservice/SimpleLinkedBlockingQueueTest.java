@@ -3,8 +3,8 @@ package edu.ted.executorservice;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -89,11 +89,11 @@ class SimpleLinkedBlockingQueueTest {
 
     @Test
     void poll() throws InterruptedException {
-        long startTimePoint = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
         String element = queue.poll(500, TimeUnit.MILLISECONDS);
-        assertTrue((System.currentTimeMillis() - startTimePoint) > 500);
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos) >= 500);
         assertNull(element);
-        startTimePoint = System.currentTimeMillis();
+        long startTimePoint = System.currentTimeMillis();
         Runnable parallelTask = () -> {
             try {
                 Thread.sleep(300);
@@ -111,7 +111,7 @@ class SimpleLinkedBlockingQueueTest {
     }
 
     @Test
-    void remainingCapacity() {
+    void remainingCapacity() throws InterruptedException {
         assertEquals(1, queue.remainingCapacity());
         queue.put("First");
         assertEquals(0, queue.remainingCapacity());
@@ -127,6 +127,20 @@ class SimpleLinkedBlockingQueueTest {
         assertNull(queue.poll(0, TimeUnit.MILLISECONDS));
     }
 
+    @Test
+    void givenSeveralElements_whenDrainTo_thenAllDrainedAndCountReturned() {
+        SimpleLinkedBlockingQueue<String> largeQueue = new SimpleLinkedBlockingQueue<>(5);
+        for (int i = 0; i < 5; i++) {
+            largeQueue.add("Element " + i);
+        }
+        List<String> drainingList = new ArrayList<>();
+        drainingList.add("Existing");
+        assertEquals(3, largeQueue.drainTo(drainingList, 3));
+        assertEquals(2, largeQueue.drainTo(drainingList));
+        assertEquals(6, drainingList.size());
+        assertEquals(0, largeQueue.size());
+    }
+
     @Test
     void givenEmptyQueue_whenDrainToAndCollectionIsEmpty_thenCorrect() throws InterruptedException {
         List<String> drainingList = new ArrayList<>();
@@ -134,4 +148,271 @@ class SimpleLinkedBlockingQueueTest {
         assertTrue(drainingList.isEmpty());
         assertNull(queue.poll(0, TimeUnit.MILLISECONDS));
     }
-}
\ No newline at end of file
+
+    @Test
+    void givenWeigher_whenTotalWeightExceeded_thenOfferFails() {
+        SimpleLinkedBlockingQueue<String> weightedQueue = new SimpleLinkedBlockingQueue<>(10, String::length);
+        assertTrue(weightedQueue.offer("123456"));
+        assertFalse(weightedQueue.offer("12345"));
+        assertTrue(weightedQueue.offer("1234"));
+        assertEquals(10, weightedQueue.getTotalWeight());
+        assertEquals(2, weightedQueue.size());
+    }
+
+    @Test
+    void givenWeigher_whenElementTaken_thenWeightReleased() throws InterruptedException {
+        SimpleLinkedBlockingQueue<String> weightedQueue = new SimpleLinkedBlockingQueue<>(10, String::length);
+        weightedQueue.put("1234567");
+        long startTimePoint = System.currentTimeMillis();
+        Runnable parallelTask = () -> {
+            try {
+                Thread.sleep(300);
+                log.debug("take returns {}", weightedQueue.take());
+            } catch (InterruptedException e) {
+                log.debug("Interrupted: ", e);
+            }
+        };
+        new Thread(parallelTask).start();
+        weightedQueue.put("12345");
+        assertTrue((System.currentTimeMillis() - startTimePoint) >= 300);
+        assertEquals(5, weightedQueue.getTotalWeight());
+    }
+
+    @Test
+    void givenWeigher_whenElementHeavierThanCapacity_thenAcceptedIntoEmptyQueue() {
+        SimpleLinkedBlockingQueue<String> weightedQueue = new SimpleLinkedBlockingQueue<>(3, String::length);
+        assertTrue(weightedQueue.offer("12345"));
+        assertFalse(weightedQueue.offer("1"));
+        assertEquals(5, weightedQueue.getTotalWeight());
+    }
+
+    @Test
+    void remove() throws InterruptedException {
+        SimpleLinkedBlockingQueue<String> unboundedQueue = new SimpleLinkedBlockingQueue<>();
+        unboundedQueue.put("First");
+        unboundedQueue.put("Second");
+        unboundedQueue.put("Third");
+        assertTrue(unboundedQueue.remove("Second"));
+        assertFalse(unboundedQueue.remove("Second"));
+        assertTrue(unboundedQueue.remove("Third"));
+        unboundedQueue.put("Fourth");
+        assertEquals(2, unboundedQueue.size());
+        assertEquals("First", unboundedQueue.take());
+        assertEquals("Fourth", unboundedQueue.take());
+        assertEquals(0, unboundedQueue.size());
+    }
+
+    @Test
+    void givenFullQueue_whenElementRemoved_thenCapacityReleased() {
+        assertTrue(queue.offer("First"));
+        assertTrue(queue.remove("First"));
+        assertEquals(1, queue.remainingCapacity());
+        assertTrue(queue.offer("Second"));
+    }
+
+    @Test
+    void givenCancelledTask_whenQueued_thenPurgedFromQueue() throws InterruptedException {
+        SimpleLinkedBlockingQueue<SimpleFutureTask<?>> taskQueue = new SimpleLinkedBlockingQueue<>(2);
+        SimpleFutureTask<Integer> firstTask = new SimpleFutureTask<>(() -> 1);
+        SimpleFutureTask<Integer> secondTask = new SimpleFutureTask<>(() -> 2);
+        taskQueue.put(firstTask);
+        taskQueue.put(secondTask);
+        assertEquals(0, taskQueue.remainingCapacity());
+        firstTask.cancel(false);
+        assertEquals(1, taskQueue.size());
+        assertNull(firstTask.getQueueNode());
+        assertSame(secondTask, taskQueue.take());
+        assertNull(secondTask.getQueueNode());
+        assertFalse(taskQueue.remove(secondTask));
+    }
+
+    @Test
+    void givenComparator_whenElementsPut_thenTakenInComparatorOrderStableForEqual() throws InterruptedException {
+        SimpleLinkedBlockingQueue<String> sortedQueue = new SimpleLinkedBlockingQueue<>(10, Long.MAX_VALUE, e -> 1,
+                (first, second) -> Integer.compare(first.length(), second.length()));
+        sortedQueue.put("ccc");
+        sortedQueue.put("a");
+        sortedQueue.put("bb");
+        sortedQueue.put("b");
+        sortedQueue.put("dddd");
+        assertEquals("a", sortedQueue.take());
+        assertEquals("b", sortedQueue.take());
+        assertEquals("bb", sortedQueue.take());
+        assertEquals("ccc", sortedQueue.take());
+        assertEquals("dddd", sortedQueue.take());
+    }
+
+    @Test
+    void givenLongUnorderedTail_whenOrderedElementPut_thenTailSkippedInOneComparison() {
+        final int[] comparisonCount = new int[1];
+        Comparator<String> priorityFirst = (first, second) -> {
+            comparisonCount[0]++;
+            return Boolean.compare(second.startsWith("p"), first.startsWith("p"));
+        };
+        SimpleLinkedBlockingQueue<String> sortedQueue = new SimpleLinkedBlockingQueue<>(Integer.MAX_VALUE, Long.MAX_VALUE, e -> 1, priorityFirst);
+        for (int i = 0; i < 1000; i++) {
+            sortedQueue.add("f" + i);
+        }
+        comparisonCount[0] = 0;
+        sortedQueue.add("p0");
+        assertTrue(comparisonCount[0] <= 2);
+        assertEquals("p0", sortedQueue.poll());
+        assertEquals("f0", sortedQueue.poll());
+    }
+
+    @Test
+    void givenComparatorAndRemovals_whenElementsPut_thenOrderMatchesStableSort() {
+        Comparator<String> byPriority = Comparator.comparingInt(e -> e.charAt(0));
+        SimpleLinkedBlockingQueue<String> sortedQueue = new SimpleLinkedBlockingQueue<>(Integer.MAX_VALUE, Long.MAX_VALUE, e -> 1, byPriority);
+        List<String> expected = new ArrayList<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            int operation = random.nextInt(10);
+            if (operation < 6) {
+                String element = (char) ('a' + random.nextInt(4)) + Integer.toString(i);
+                sortedQueue.add(element);
+                int position = expected.size();
+                while (position > 0 && byPriority.compare(expected.get(position - 1), element) > 0) {
+                    position--;
+                }
+                expected.add(position, element);
+            } else if (operation < 8 && !expected.isEmpty()) {
+                String element = expected.remove(random.nextInt(expected.size()));
+                assertTrue(sortedQueue.remove(element));
+            } else if (!expected.isEmpty()) {
+                assertEquals(expected.remove(0), sortedQueue.poll());
+            }
+        }
+        List<String> drained = new ArrayList<>();
+        sortedQueue.drainTo(drained);
+        assertIterableEquals(expected, drained);
+    }
+
+    @Test
+    void givenStatisticsDisabled_whenQueueUsed_thenStatisticsAreEmpty() throws InterruptedException {
+        queue.put("First");
+        queue.take();
+        assertEquals(0, queue.getStatistics().getLockAcquireCount());
+    }
+
+    @Test
+    void givenStatisticsEnabled_whenConsumerAndProducerWait_thenWaitsAndSignalsRecorded() throws InterruptedException {
+        queue.enableStatistics();
+        Thread producer = new Thread(() -> {
+            try {
+                Thread.sleep(100);
+                queue.put("First");
+                queue.put("Second");
+                queue.put("Third");
+            } catch (InterruptedException e) {
+                log.debug("Interrupted: ", e);
+            }
+        });
+        producer.start();
+        assertEquals("First", queue.take());
+        Thread.sleep(100);
+        assertEquals("Second", queue.take());
+        assertEquals("Third", queue.take());
+        producer.join();
+        QueueStatistics statistics = queue.getStatistics();
+        assertTrue(statistics.getConsumerWaitCount() >= 1);
+        assertTrue(statistics.getTotalConsumerWaitTime(TimeUnit.MILLISECONDS) >= 50);
+        assertTrue(statistics.getProducerWaitCount() >= 1);
+        assertTrue(statistics.getTotalProducerWaitTime(TimeUnit.MILLISECONDS) >= 50);
+        assertEquals(3, statistics.getReadSignalCount());
+        assertEquals(3, statistics.getWriteSignalCount());
+        assertTrue(statistics.getLockAcquireCount() >= 6);
+    }
+
+    @Test
+    void givenElements_whenPeekAndIterate_thenHeadReturnedAndSnapshotInOrder() {
+        SimpleLinkedBlockingQueue<String> largeQueue = new SimpleLinkedBlockingQueue<>(5);
+        assertNull(largeQueue.peek());
+        assertThrows(NoSuchElementException.class, largeQueue::element);
+        largeQueue.add("First");
+        largeQueue.add("Second");
+        largeQueue.add("Third");
+        assertEquals("First", largeQueue.peek());
+        assertEquals(3, largeQueue.size());
+        List<String> iterated = new ArrayList<>();
+        for (Iterator<String> iterator = largeQueue.iterator(); iterator.hasNext(); ) {
+            String element = iterator.next();
+            iterated.add(element);
+            if (element.equals("Second")) {
+                iterator.remove();
+            }
+        }
+        assertIterableEquals(Arrays.asList("First", "Second", "Third"), iterated);
+        assertFalse(largeQueue.contains("Second"));
+        assertTrue(largeQueue.contains("Third"));
+        assertArrayEquals(new String[]{"First", "Third"}, largeQueue.toArray(new String[0]));
+        assertEquals("First", largeQueue.remove());
+        largeQueue.clear();
+        assertTrue(largeQueue.isEmpty());
+        assertEquals(5, largeQueue.remainingCapacity());
+    }
+
+    @Test
+    void givenFullQueue_whenPutInterrupted_thenInterruptedException() throws InterruptedException {
+        queue.put("First");
+        Thread.currentThread().interrupt();
+        assertThrows(InterruptedException.class, () -> queue.put("Second"));
+        assertEquals(1, queue.size());
+    }
+
+    @Test
+    void givenQueue_whenUsedAsBlockingQueue_thenBulkOperationsWork() {
+        BlockingQueue<String> blockingQueue = new SimpleLinkedBlockingQueue<>(5);
+        assertTrue(blockingQueue.addAll(Arrays.asList("First", "Second")));
+        assertTrue(blockingQueue.containsAll(Arrays.asList("Second", "First")));
+        assertTrue(blockingQueue.removeIf(element -> element.startsWith("F")));
+        assertIterableEquals(Collections.singletonList("Second"), blockingQueue);
+    }
+
+    @Test
+    void givenMicrosecondTimeout_whenPollEmptyQueue_thenReturnsNullWithoutMillisecondRounding() throws InterruptedException {
+        long startNanos = System.nanoTime();
+        assertNull(queue.poll(200, TimeUnit.MICROSECONDS));
+        long elapsedNanos = System.nanoTime() - startNanos;
+        assertTrue(elapsedNanos >= TimeUnit.MICROSECONDS.toNanos(200));
+        assertTrue(elapsedNanos < TimeUnit.MILLISECONDS.toNanos(50));
+        startNanos = System.nanoTime();
+        assertNull(queue.poll(0, TimeUnit.NANOSECONDS));
+        assertTrue(System.nanoTime() - startNanos < TimeUnit.MILLISECONDS.toNanos(50));
+    }
+
+    @Test
+    void givenMicrosecondTimeout_whenOfferToFullQueue_thenReturnsFalseWithoutMillisecondRounding() throws InterruptedException {
+        queue.put("First");
+        long startNanos = System.nanoTime();
+        assertFalse(queue.offer("Second", 300, TimeUnit.MICROSECONDS));
+        long elapsedNanos = System.nanoTime() - startNanos;
+        assertTrue(elapsedNanos >= TimeUnit.MICROSECONDS.toNanos(300));
+        assertTrue(elapsedNanos < TimeUnit.MILLISECONDS.toNanos(50));
+    }
+
+    @Test
+    void givenSingleElement_whenTimedPoll_thenReturnedWithoutWaiting() throws InterruptedException {
+        queue.put("First");
+        long startNanos = System.nanoTime();
+        assertEquals("First", queue.poll(1, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - startNanos < TimeUnit.MILLISECONDS.toNanos(50));
+    }
+
+    @Test
+    void givenFullQueue_whenSpaceFreedWithinTimeout_thenTimedOfferSucceeds() throws InterruptedException {
+        queue.put("First");
+        Thread consumer = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+                queue.take();
+            } catch (InterruptedException e) {
+                log.debug("Interrupted: ", e);
+            }
+        });
+        consumer.start();
+        assertTrue(queue.offer("Second", 1, TimeUnit.SECONDS));
+        consumer.join();
+        assertEquals("Second", queue.poll());
+    }
+}
@@ -0,0 +1,152 @@
+package edu.ted.executorservice;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+public class TaskGraphTest {
+
+    @Test
+    public void givenDiamondGraph_whenSubmitted_thenIndependentNodesRunInParallel() throws InterruptedException, ExecutionException, TimeoutException {
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(2);
+        TaskGraph graph = new TaskGraph();
+        TaskGraph.Node<Integer> source = graph.addTask("source", () -> 10);
+        TaskGraph.Node<Integer> left = graph.addTask("left", () -> {
+            Thread.sleep(200);
+            return source.getResult() + 1;
+        }, source);
+        TaskGraph.Node<Integer> right = graph.addTask("right", () -> {
+            Thread.sleep(100);
+            return source.getResult() + 2;
+        }, source);
+        TaskGraph.Node<Integer> sink = graph.addTask("sink", () -> left.getResult() + right.getResult(), left, right);
+        long startNanos = System.nanoTime();
+        Future<Void> graphFuture = executor.submitGraph(graph);
+        assertFalse(graphFuture instanceof RunnableFuture);
+        graphFuture.get(1, TimeUnit.SECONDS);
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos) < 290);
+        assertEquals(23, (int) sink.getResult());
+        List<TaskGraph.Node<?>> criticalPath = graph.getCriticalPath();
+        assertEquals(3, criticalPath.size());
+        assertSame(source, criticalPath.get(0));
+        assertSame(left, criticalPath.get(1));
+        assertSame(sink, criticalPath.get(2));
+        assertTrue(graph.getCriticalPathTime(TimeUnit.MILLISECONDS) >= 200);
+        assertTrue(left.getRunTime(TimeUnit.MILLISECONDS) >= 200);
+        executor.shutdown();
+    }
+
+    @Test
+    public void givenChainLongerThanPool_whenSubmitted_thenCompletesWithoutBlockingWorkers() throws InterruptedException, ExecutionException, TimeoutException {
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(1);
+        TaskGraph graph = new TaskGraph();
+        TaskGraph.Node<Integer> previous = graph.addTask("step0", () -> 0);
+        for (int i = 1; i < 10; i++) {
+            final TaskGraph.Node<Integer> dependency = previous;
+            previous = graph.addTask("step" + i, () -> dependency.getResult() + 1, dependency);
+        }
+        executor.submitGraph(graph).get(1, TimeUnit.SECONDS);
+        assertEquals(9, (int) previous.getResult());
+        assertEquals(10, graph.getCriticalPath().size());
+        executor.shutdown();
+    }
+
+    @Test
+    public void givenWideFanOutOnBoundedPool_whenSubmitted_thenCompletesWithoutBlockingWorkers() throws InterruptedException, ExecutionException, TimeoutException {
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(2, new ArrayBlockingQueue<>(2));
+        TaskGraph graph = new TaskGraph();
+        List<TaskGraph.Node<?>> leaves = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            TaskGraph.Node<Integer> root = graph.addTask("root" + i, () -> {
+                Thread.sleep(50);
+                return 1;
+            });
+            for (int j = 0; j < 20; j++) {
+                leaves.add(graph.addTask("leaf" + i + "-" + j, () -> root.getResult() + 1, root));
+            }
+        }
+        TaskGraph.Node<Integer> sink = graph.addTask("sink", () -> {
+            int sum = 0;
+            for (TaskGraph.Node<?> leaf : leaves) {
+                sum += (Integer) leaf.getResult();
+            }
+            return sum;
+        }, leaves.toArray(new TaskGraph.Node<?>[0]));
+        executor.submitGraph(graph).get(2, TimeUnit.SECONDS);
+        assertEquals(80, (int) sink.getResult());
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void givenFailingNode_whenSubmitted_thenDependentsCancelledAndGraphFails() throws InterruptedException, TimeoutException {
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(2);
+        final AtomicBoolean dependentRan = new AtomicBoolean();
+        TaskGraph graph = new TaskGraph();
+        TaskGraph.Node<Integer> failing = graph.addTask("failing", () -> {
+            throw new IllegalStateException("node failure");
+        });
+        TaskGraph.Node<Integer> dependent = graph.addTask("dependent", () -> {
+            dependentRan.set(true);
+            return 1;
+        }, failing);
+        TaskGraph.Node<Integer> transitive = graph.addTask("transitive", () -> 2, dependent);
+        TaskGraph.Node<Integer> independent = graph.addTask("independent", () -> 3);
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> executor.submitGraph(graph).get(1, TimeUnit.SECONDS));
+        assertTrue(exception.getCause() instanceof IllegalStateException);
+        assertFalse(dependentRan.get());
+        assertTrue(dependent.getFuture().isCancelled());
+        assertTrue(transitive.getFuture().isCancelled());
+        assertEquals(3, (int) independent.getResult());
+        executor.shutdown();
+    }
+
+    @Test
+    public void givenRunningGraph_whenCancelled_thenNodesCancelledAndRunningInterrupted() throws InterruptedException, ExecutionException, TimeoutException {
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(1);
+        final CountDownLatch startedLatch = new CountDownLatch(1);
+        final CountDownLatch interruptedLatch = new CountDownLatch(1);
+        TaskGraph graph = new TaskGraph();
+        TaskGraph.Node<Integer> running = graph.addTask("running", () -> {
+            startedLatch.countDown();
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                interruptedLatch.countDown();
+                throw e;
+            }
+            return 1;
+        });
+        TaskGraph.Node<Integer> dependent = graph.addTask("dependent", () -> 2, running);
+        Future<Void> graphFuture = executor.submitGraph(graph);
+        startedLatch.await();
+        assertTrue(graphFuture.cancel(true));
+        assertTrue(interruptedLatch.await(1, TimeUnit.SECONDS));
+        assertTrue(running.getFuture().isCancelled());
+        assertTrue(dependent.getFuture().isCancelled());
+        assertThrows(IllegalStateException.class, dependent::getResult);
+        assertEquals(3, (int) executor.submit(() -> 3).get(1, TimeUnit.SECONDS));
+        executor.shutdown();
+    }
+
+    @Test
+    public void givenSubmittedGraph_whenModified_thenIllegalState() {
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(1);
+        TaskGraph graph = new TaskGraph();
+        TaskGraph otherGraph = new TaskGraph();
+        TaskGraph.Node<Integer> otherNode = otherGraph.addTask("other", () -> 1);
+        assertThrows(IllegalArgumentException.class, () -> graph.addTask("foreign", () -> 2, otherNode));
+        graph.addTask("single", () -> 1);
+        executor.submitGraph(graph);
+        assertThrows(IllegalStateException.class, () -> graph.addTask("late", () -> 2));
+        assertThrows(IllegalStateException.class, () -> executor.submitGraph(graph));
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,135 @@
+package edu.ted.executorservice;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+public class TenantSchedulingTest {
+
+    @Test
+    public void givenWeightedTenants_whenBacklogged_thenServedByWeight() throws InterruptedException, ExecutionException {
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(1);
+        executor.registerTenant("heavy", 3, 100);
+        executor.registerTenant("light", 1, 100);
+        final List<String> executionOrder = new CopyOnWriteArrayList<>();
+        final CountDownLatch blockingLatch = blockWorker(executor);
+        Future<?> lastFuture = null;
+        for (int i = 0; i < 6; i++) {
+            executor.submitForTenant("heavy", () -> executionOrder.add("heavy"));
+            lastFuture = executor.submitForTenant("light", () -> executionOrder.add("light"));
+        }
+        blockingLatch.countDown();
+        lastFuture.get();
+        assertEquals(Arrays.asList("heavy", "heavy", "heavy", "light", "heavy", "heavy", "heavy", "light"), executionOrder.subList(0, 8));
+        executor.shutdown();
+    }
+
+    @Test
+    public void givenNoisyTenantBurst_whenQuietTenantSubmits_thenQuietTaskNotStarved() throws InterruptedException, ExecutionException {
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(1);
+        executor.registerTenant("noisy", 1, 1000);
+        executor.registerTenant("quiet", 1, 10);
+        final List<String> executionOrder = new CopyOnWriteArrayList<>();
+        final CountDownLatch blockingLatch = blockWorker(executor);
+        for (int i = 0; i < 50; i++) {
+            executor.submitForTenant("noisy", () -> executionOrder.add("noisy"));
+        }
+        Future<?> quietFuture = executor.submitForTenant("quiet", () -> executionOrder.add("quiet"));
+        blockingLatch.countDown();
+        quietFuture.get();
+        assertTrue(executionOrder.indexOf("quiet") <= 1);
+        executor.shutdown();
+    }
+
+    @Test
+    public void givenFullTenantQueue_whenSubmitted_thenRejected() throws InterruptedException {
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(1);
+        executor.registerTenant("capped", 1, 2);
+        final CountDownLatch blockingLatch = blockWorker(executor);
+        executor.submitForTenant("capped", () -> 1);
+        executor.submitForTenant("capped", () -> 2);
+        assertThrows(RejectedExecutionException.class, () -> executor.submitForTenant("capped", () -> 3));
+        assertThrows(IllegalArgumentException.class, () -> executor.submitForTenant("unknown", () -> 4));
+        assertEquals(2, executor.getTenantStatistics("capped").getQueuedTaskCount());
+        blockingLatch.countDown();
+        executor.shutdown();
+    }
+
+    @Test
+    public void givenDispatchedTasks_whenStatisticsRequested_thenQueueWaitReported() throws InterruptedException, ExecutionException {
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(1);
+        executor.registerTenant("measured", 1, 10);
+        final CountDownLatch blockingLatch = blockWorker(executor);
+        Future<Integer> future = executor.submitForTenant("measured", () -> 1);
+        Thread.sleep(100);
+        blockingLatch.countDown();
+        future.get();
+        Map<String, TenantStatistics> statistics = executor.getTenantStatistics();
+        TenantStatistics tenantStatistics = statistics.get("measured");
+        assertEquals(1, tenantStatistics.getDispatchedTaskCount());
+        assertEquals(0, tenantStatistics.getQueuedTaskCount());
+        assertTrue(tenantStatistics.getMaxQueueWait(TimeUnit.MILLISECONDS) >= 100);
+        executor.shutdown();
+    }
+
+    @Test
+    public void givenCancelledTenantTask_whenQueueInspected_thenItsDispatchEntryRemoved() throws InterruptedException, ExecutionException {
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(1);
+        executor.registerTenant("first", 1, 10);
+        executor.registerTenant("second", 1, 10);
+        final CountDownLatch blockingLatch = blockWorker(executor);
+        Future<Integer> cancelledFuture = executor.submitForTenant("first", () -> 1);
+        Future<Integer> secondFuture = executor.submitForTenant("second", () -> 2);
+        Future<Integer> thirdFuture = executor.submitForTenant("first", () -> 3);
+        assertEquals(3, executor.getStatistics().getQueuedTaskCount());
+        assertTrue(cancelledFuture.cancel(false));
+        assertEquals(2, executor.getStatistics().getQueuedTaskCount());
+        blockingLatch.countDown();
+        assertEquals(2, (int) secondFuture.get());
+        assertEquals(3, (int) thirdFuture.get());
+        assertEquals(0, executor.getStatistics().getQueuedTaskCount());
+        executor.shutdown();
+    }
+
+    @Test
+    public void givenWeightBoundedPool_whenTenantTasksQueued_thenTheirWeightCharged() throws InterruptedException, ExecutionException {
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(1, 100, task -> 10);
+        executor.registerTenant("weighed", 1, 10);
+        final CountDownLatch blockingLatch = blockWorker(executor);
+        executor.submitForTenant("weighed", () -> 1);
+        Future<Integer> lastFuture = executor.submitForTenant("weighed", () -> 2);
+        assertEquals(20, executor.getStatistics().getQueuedTaskWeight());
+        blockingLatch.countDown();
+        assertEquals(2, (int) lastFuture.get());
+        assertEquals(0, executor.getStatistics().getQueuedTaskWeight());
+        executor.shutdown();
+    }
+
+    @Test
+    public void givenQueuedTenantTasks_whenShutdownNow_thenTenantTasksReturned() throws InterruptedException {
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(1);
+        executor.registerTenant("drained", 1, 10);
+        blockWorker(executor);
+        Future<Integer> first = executor.submitForTenant("drained", () -> 1);
+        Future<Integer> second = executor.submitForTenant("drained", () -> 2);
+        List<Runnable> restOfTasks = executor.shutdownNow();
+        assertEquals(Arrays.asList(first, second), restOfTasks);
+    }
+
+    private static CountDownLatch blockWorker(ExecutorService executor) throws InterruptedException {
+        final CountDownLatch blockingLatch = new CountDownLatch(1);
+        executor.submit(() -> {
+            blockingLatch.await();
+            return null;
+        });
+        Thread.sleep(50);
+        return blockingLatch;
+    }
+}
@@ -0,0 +1,127 @@
+package edu.ted.executorservice;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+public class WorkerResourceTest {
+
+    @Test
+    public void givenManyTasks_whenResourceRequested_thenOneInstancePerWorker() throws InterruptedException, ExecutionException {
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(2);
+        final AtomicInteger createdCount = new AtomicInteger();
+        final WorkerResource<byte[]> buffer = WorkerResource.of(() -> {
+            createdCount.incrementAndGet();
+            return new byte[64 * 1024];
+        });
+        final Map<Thread, byte[]> buffersByThread = new ConcurrentHashMap<>();
+        List<Future<Boolean>> futures = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            futures.add(executor.submit(() -> buffersByThread.computeIfAbsent(Thread.currentThread(), t -> buffer.get()) == buffer.get()));
+        }
+        for (Future<Boolean> future : futures) {
+            assertTrue(future.get());
+        }
+        assertEquals(buffersByThread.size(), createdCount.get());
+        assertTrue(createdCount.get() <= 2);
+        executor.shutdown();
+    }
+
+    @Test
+    public void givenCloseableResources_whenPoolShutdown_thenClosedInReverseOrderBeforeTermination() throws InterruptedException, ExecutionException {
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(1);
+        final List<String> closed = new CopyOnWriteArrayList<>();
+        final WorkerResource<AutoCloseable> parser = WorkerResource.of(() -> () -> closed.add("parser"));
+        final WorkerResource<AutoCloseable> connection = WorkerResource.of(() -> () -> closed.add("connection"));
+        executor.submit(() -> {
+            parser.get();
+            connection.get();
+            return null;
+        }).get();
+        assertTrue(closed.isEmpty());
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+        assertEquals(2, closed.size());
+        assertEquals("connection", closed.get(0));
+        assertEquals("parser", closed.get(1));
+    }
+
+    @Test
+    public void givenFailingCloser_whenWorkerStops_thenOtherResourcesStillClosed() throws InterruptedException, ExecutionException {
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(1);
+        final AtomicInteger closedCount = new AtomicInteger();
+        final WorkerResource<StringBuilder> counted = WorkerResource.of(StringBuilder::new, builder -> closedCount.incrementAndGet());
+        final WorkerResource<StringBuilder> failing = WorkerResource.of(StringBuilder::new, builder -> {
+            throw new IllegalStateException("Close failed");
+        });
+        executor.submit(() -> {
+            counted.get();
+            failing.get();
+            return null;
+        }).get();
+        executor.shutdownNow();
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+        assertEquals(1, closedCount.get());
+    }
+
+    @Test
+    public void givenCompensatingWorker_whenItRetires_thenItsResourceClosed() throws InterruptedException, ExecutionException, TimeoutException {
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(1);
+        final AtomicInteger createdCount = new AtomicInteger();
+        final AtomicInteger closedCount = new AtomicInteger();
+        final WorkerResource<Object> resource = WorkerResource.of(() -> {
+            createdCount.incrementAndGet();
+            return new Object();
+        }, instance -> closedCount.incrementAndGet());
+        final CountDownLatch releaseLatch = new CountDownLatch(1);
+        Future<?> blockingFuture = executor.submit(() -> {
+            resource.get();
+            SimpleFixedThreadPool.managedBlock(new SimpleFixedThreadPool.ManagedBlocker() {
+                @Override
+                public boolean block() throws InterruptedException {
+                    releaseLatch.await();
+                    return true;
+                }
+
+                @Override
+                public boolean isReleasable() {
+                    return releaseLatch.getCount() == 0;
+                }
+            });
+            return null;
+        });
+        executor.submit(resource::get).get(1, TimeUnit.SECONDS);
+        assertEquals(2, createdCount.get());
+        releaseLatch.countDown();
+        blockingFuture.get();
+        Thread.sleep(300);
+        assertEquals(1, closedCount.get());
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+        assertEquals(2, closedCount.get());
+    }
+
+    @Test
+    public void givenThreadOutsidePool_whenResourceRequested_thenIllegalStateException() {
+        WorkerResource<Object> resource = WorkerResource.of(Object::new);
+        assertThrows(IllegalStateException.class, resource::get);
+    }
+
+    @Test
+    public void givenFactoryReturningNull_whenResourceRequested_thenTaskFails() {
+        final SimpleFixedThreadPool executor = new SimpleFixedThreadPool(1);
+        WorkerResource<Object> resource = WorkerResource.of(() -> null);
+        Future<Object> future = executor.submit(resource::get);
+        ExecutionException exception = assertThrows(ExecutionException.class, future::get);
+        assertTrue(exception.getCause() instanceof NullPointerException);
+        executor.shutdown();
+    }
+}